@@ -8,12 +8,13 @@ import android.util.Log;
 
 import com.voxtric.timegraph.GraphData;
 import com.voxtric.timegraph.GraphDataProvider;
+import com.voxtric.timegraph.PeriodLabelProvider;
 import com.voxtric.timegraph.TimeAxisLabelData;
 import com.voxtric.timegraph.TimeGraph;
 
 import java.util.Random;
 
-public class MainActivity extends AppCompatActivity implements GraphDataProvider
+public class MainActivity extends AppCompatActivity implements GraphDataProvider, PeriodLabelProvider
 {
   private static final long MILLISECONDS_IN_DAY = 86400000L;
 
@@ -42,7 +43,7 @@ public class MainActivity extends AppCompatActivity implements GraphDataProvider
       m_timeGraph.setValueAxisMidLabels(new float[]{ 4.0f, 8.0f, 12.0f });
       m_timeGraph.setRangeHighlights(new float[] { 0.0f, 4.0f, 8.0f, 12.0f, 16.0f },
                                      new int[] { red, green, yellow, red },
-                                     TimeGraph.DISPLAY_MODE_UNDERLINE_WITH_FADE,
+                                     TimeGraph.DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE,
                                      true);
       m_timeGraph.setVisibleDataPeriod(MILLISECONDS_IN_DAY * 10, MILLISECONDS_IN_DAY * 13, MainActivity.this, true);
 
@@ -69,6 +70,24 @@ public class MainActivity extends AppCompatActivity implements GraphDataProvider
         Log.e("MainActivity", timestamp + ":" + value);
       }
     });
+    m_timeGraph.setOnDataPointScrubbedListener(new TimeGraph.OnDataPointScrubbedListener()
+    {
+      @Override
+      public void onScrubStarted(TimeGraph graph)
+      {
+      }
+
+      @Override
+      public void onDataPointScrubbed(TimeGraph graph, long timestamp, float value)
+      {
+        Log.e("MainActivity", "Scrubbed " + timestamp + ":" + value);
+      }
+
+      @Override
+      public void onScrubFinished(TimeGraph graph)
+      {
+      }
+    });
 
     m_timeGraph.refresh(this, true);
   }
@@ -92,4 +111,10 @@ public class MainActivity extends AppCompatActivity implements GraphDataProvider
   {
     return TimeAxisLabelData.autoLabel(data);
   }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return TimeAxisLabelData.autoLabel(startTimestamp, endTimestamp);
+  }
 }
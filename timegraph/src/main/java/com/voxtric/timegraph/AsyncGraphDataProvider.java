@@ -0,0 +1,18 @@
+package com.voxtric.timegraph;
+
+import android.os.CancellationSignal;
+
+public interface AsyncGraphDataProvider
+{
+  // Fills 'buffer' on any thread and reports through 'callback' once finished with it. When 'cancellationSignal' is
+  // cancelled the result is no longer wanted, so implementations should stop early and call Callback.onCancelled().
+  void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp,
+               CancellationSignal cancellationSignal, Callback callback);
+  TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data);
+
+  interface Callback
+  {
+    void onDataLoaded();
+    void onCancelled();
+  }
+}
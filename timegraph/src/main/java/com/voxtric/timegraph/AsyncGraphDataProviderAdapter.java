@@ -0,0 +1,72 @@
+package com.voxtric.timegraph;
+
+import android.os.CancellationSignal;
+
+class AsyncGraphDataProviderAdapter implements AsyncGraphDataProvider, PeriodLabelProvider
+{
+  final GraphDataBufferProvider dataProvider;
+
+  AsyncGraphDataProviderAdapter(GraphDataBufferProvider dataProvider)
+  {
+    this.dataProvider = dataProvider;
+  }
+
+  @Override
+  public void getData(final TimeGraph graph, final GraphDataBuffer buffer,
+                      final long startTimestamp, final long endTimestamp, final long visibleStartTimestamp, final long visibleEndTimestamp,
+                      final CancellationSignal cancellationSignal, final Callback callback)
+  {
+    final RefreshScheduler scheduler = graph.getRefreshScheduler();
+    final Runnable job = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        // Synchronous providers can't be interrupted once started, so only check for cancellation either side.
+        if (cancellationSignal.isCanceled())
+        {
+          callback.onCancelled();
+        }
+        else
+        {
+          dataProvider.getData(graph, buffer, startTimestamp, endTimestamp, visibleStartTimestamp, visibleEndTimestamp);
+          if (cancellationSignal.isCanceled())
+          {
+            callback.onCancelled();
+          }
+          else
+          {
+            callback.onDataLoaded();
+          }
+        }
+      }
+    };
+
+    // Superseded requests leave the queue straight away, so a burst of refreshes only ever runs the last one.
+    cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener()
+    {
+      @Override
+      public void onCancel()
+      {
+        if (scheduler.remove(job))
+        {
+          callback.onCancelled();
+        }
+      }
+    });
+    scheduler.execute(job, graph.getRefreshPriority());
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data)
+  {
+    return dataProvider.getLabelsForData(data);
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return dataProvider instanceof PeriodLabelProvider ?
+        ((PeriodLabelProvider)dataProvider).getLabelsForPeriod(startTimestamp, endTimestamp) : null;
+  }
+}
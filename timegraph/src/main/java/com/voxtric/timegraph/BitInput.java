@@ -0,0 +1,46 @@
+package com.voxtric.timegraph;
+
+// Reads bits written by BitOutput.
+class BitInput
+{
+  private long[] m_words = null;
+  private long m_position = 0L;
+
+  void reset(long[] words)
+  {
+    m_words = words;
+    m_position = 0L;
+  }
+
+  boolean readBit()
+  {
+    boolean bit = ((m_words[(int)(m_position >>> 6)] >>> (63 - (int)(m_position & 63L))) & 1L) != 0L;
+    m_position++;
+    return bit;
+  }
+
+  long readBits(int count)
+  {
+    long value = 0L;
+    if (count > 0)
+    {
+      int wordIndex = (int)(m_position >>> 6);
+      int availableBits = 64 - (int)(m_position & 63L);
+      if (count <= availableBits)
+      {
+        value = m_words[wordIndex] >>> (availableBits - count);
+      }
+      else
+      {
+        int overflowBits = count - availableBits;
+        value = (m_words[wordIndex] << overflowBits) | (m_words[wordIndex + 1] >>> (64 - overflowBits));
+      }
+      if (count < 64)
+      {
+        value &= (1L << count) - 1L;
+      }
+      m_position += count;
+    }
+    return value;
+  }
+}
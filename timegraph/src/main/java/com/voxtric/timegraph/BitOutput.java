@@ -0,0 +1,76 @@
+package com.voxtric.timegraph;
+
+import java.util.Arrays;
+
+// Packs bits most significant first into 64-bit words.
+class BitOutput
+{
+  private long[] m_words;
+  private long m_bitCount = 0L;
+
+  BitOutput(int initialWordCount)
+  {
+    m_words = new long[Math.max(initialWordCount, 1)];
+  }
+
+  long getBitCount()
+  {
+    return m_bitCount;
+  }
+
+  int getWordCount()
+  {
+    return (int)((m_bitCount + 63L) >>> 6);
+  }
+
+  // Valid up to getWordCount() only.
+  long[] getWords()
+  {
+    return m_words;
+  }
+
+  long[] toWordArray()
+  {
+    return Arrays.copyOf(m_words, getWordCount());
+  }
+
+  void clear()
+  {
+    Arrays.fill(m_words, 0, getWordCount(), 0L);
+    m_bitCount = 0L;
+  }
+
+  void writeBit(boolean bit)
+  {
+    writeBits(bit ? 1L : 0L, 1);
+  }
+
+  void writeBits(long value, int count)
+  {
+    if (count > 0)
+    {
+      int wordIndex = (int)(m_bitCount >>> 6);
+      if (wordIndex + 1 >= m_words.length)
+      {
+        m_words = Arrays.copyOf(m_words, Math.max(m_words.length * 2, wordIndex + 2));
+      }
+
+      if (count < 64)
+      {
+        value &= (1L << count) - 1L;
+      }
+      int freeBits = 64 - (int)(m_bitCount & 63L);
+      if (count <= freeBits)
+      {
+        m_words[wordIndex] |= value << (freeBits - count);
+      }
+      else
+      {
+        int overflowBits = count - freeBits;
+        m_words[wordIndex] |= value >>> overflowBits;
+        m_words[wordIndex + 1] |= value << (64 - overflowBits);
+      }
+      m_bitCount += count;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CachingGraphDataProvider implements GraphDataBufferProvider, PeriodLabelProvider
+{
+  private static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+  private static final int BYTES_PER_TIMESTAMP = Long.SIZE / Byte.SIZE;
+  private static final int BYTES_PER_VALUE = Float.SIZE / Byte.SIZE;
+  private static final int BYTES_PER_TILE = 64;
+
+  private final GraphDataBufferProvider m_dataProvider;
+  private final long m_tileDuration;
+  private long m_maxBytes;
+
+  // Access ordered, so iteration starts at the least recently used tile.
+  private final LinkedHashMap<Long, GraphDataBuffer> m_tiles = new LinkedHashMap<>(16, 0.75f, true);
+  private final GraphDataBuffer m_fetchBuffer = new GraphDataBuffer();
+  private long m_cachedBytes = 0L;
+  // Tiles reaching the newest data seen may still be filling up, so they are only kept for the request that fetched
+  // them and asked for again by the next one.
+  private final HashMap<Long, GraphDataBuffer> m_openTiles = new HashMap<>();
+  private long m_newestTimestamp = Long.MIN_VALUE;
+
+  private long m_hitCount = 0L;
+  private long m_missCount = 0L;
+  private long m_evictionCount = 0L;
+
+  public CachingGraphDataProvider(@NonNull GraphDataProvider dataProvider, long tileDuration)
+  {
+    this(new GraphDataProviderAdapter(dataProvider), tileDuration, DEFAULT_MAX_BYTES);
+  }
+
+  public CachingGraphDataProvider(@NonNull GraphDataBufferProvider dataProvider, long tileDuration)
+  {
+    this(dataProvider, tileDuration, DEFAULT_MAX_BYTES);
+  }
+
+  public CachingGraphDataProvider(@NonNull GraphDataBufferProvider dataProvider, long tileDuration, long maxBytes)
+  {
+    if (tileDuration <= 0L)
+    {
+      throw new IllegalArgumentException("Tile duration must be greater than zero.");
+    }
+    if (maxBytes <= 0L)
+    {
+      throw new IllegalArgumentException("Maximum cache size must be greater than zero.");
+    }
+
+    m_dataProvider = dataProvider;
+    m_tileDuration = tileDuration;
+    m_maxBytes = maxBytes;
+  }
+
+  @Override
+  public synchronized void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp)
+  {
+    long firstTile = tileIndex(startTimestamp);
+    long lastTile = tileIndex(endTimestamp);
+    m_openTiles.clear();
+
+    // Fetch each contiguous run of missing tiles with a single provider call.
+    long missingRunStart = Long.MIN_VALUE;
+    for (long tile = firstTile; tile <= lastTile + 1; tile++)
+    {
+      boolean missing = tile <= lastTile && !m_tiles.containsKey(tile);
+      if (missing)
+      {
+        m_missCount++;
+        if (missingRunStart == Long.MIN_VALUE)
+        {
+          missingRunStart = tile;
+        }
+      }
+      else
+      {
+        if (tile <= lastTile)
+        {
+          m_hitCount++;
+        }
+        if (missingRunStart != Long.MIN_VALUE)
+        {
+          fetchTiles(graph, missingRunStart, tile - 1, visibleStartTimestamp, visibleEndTimestamp);
+          missingRunStart = Long.MIN_VALUE;
+        }
+      }
+    }
+
+    for (long tile = firstTile; tile <= lastTile; tile++)
+    {
+      GraphDataBuffer tileData = m_tiles.get(tile);
+      if (tileData == null)
+      {
+        tileData = m_openTiles.get(tile);
+      }
+      if (tileData != null)
+      {
+        if (buffer.isEmpty())
+        {
+          buffer.setSeriesCount(tileData.getSeriesCount());
+        }
+        copyRange(tileData, buffer, startTimestamp, endTimestamp);
+      }
+    }
+
+    m_openTiles.clear();
+    evict();
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data)
+  {
+    return m_dataProvider.getLabelsForData(data);
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return m_dataProvider instanceof PeriodLabelProvider ?
+        ((PeriodLabelProvider)m_dataProvider).getLabelsForPeriod(startTimestamp, endTimestamp) : null;
+  }
+
+  public synchronized void invalidate()
+  {
+    m_tiles.clear();
+    m_cachedBytes = 0L;
+  }
+
+  // Drops every tile overlapping the given period, e.g. after data older than the newest already fetched has been
+  // written to the underlying source. Data appended after the newest is picked up without this, as the tiles it falls
+  // in are never cached.
+  public synchronized void invalidate(long startTimestamp, long endTimestamp)
+  {
+    long lastTile = tileIndex(endTimestamp);
+    for (long tile = tileIndex(startTimestamp); tile <= lastTile; tile++)
+    {
+      GraphDataBuffer tileData = m_tiles.remove(tile);
+      if (tileData != null)
+      {
+        m_cachedBytes -= tileBytes(tileData);
+      }
+    }
+  }
+
+  public synchronized void setMaxBytes(long maxBytes)
+  {
+    if (maxBytes <= 0L)
+    {
+      throw new IllegalArgumentException("Maximum cache size must be greater than zero.");
+    }
+    m_maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized long getMaxBytes()
+  {
+    return m_maxBytes;
+  }
+
+  public synchronized long getCachedBytes()
+  {
+    return m_cachedBytes;
+  }
+
+  public long getTileDuration()
+  {
+    return m_tileDuration;
+  }
+
+  public synchronized long getHitCount()
+  {
+    return m_hitCount;
+  }
+
+  public synchronized long getMissCount()
+  {
+    return m_missCount;
+  }
+
+  public synchronized long getEvictionCount()
+  {
+    return m_evictionCount;
+  }
+
+  public synchronized void resetStatistics()
+  {
+    m_hitCount = 0L;
+    m_missCount = 0L;
+    m_evictionCount = 0L;
+  }
+
+  private void fetchTiles(TimeGraph graph, long firstTile, long lastTile, long visibleStartTimestamp, long visibleEndTimestamp)
+  {
+    long fetchStartTimestamp = firstTile * m_tileDuration;
+    long fetchEndTimestamp = ((lastTile + 1L) * m_tileDuration) - 1L;
+    m_fetchBuffer.setSeriesCount(1);
+    m_fetchBuffer.clear();
+    m_dataProvider.getData(graph, m_fetchBuffer, fetchStartTimestamp, fetchEndTimestamp, visibleStartTimestamp, visibleEndTimestamp);
+
+    long[] timestamps = m_fetchBuffer.getTimestamps();
+    int fetchedCount = m_fetchBuffer.size();
+    if (fetchedCount > 0)
+    {
+      m_newestTimestamp = Math.max(m_newestTimestamp, m_fetchBuffer.getLastTimestamp());
+    }
+    int index = m_fetchBuffer.lowerBound(fetchStartTimestamp);
+    for (long tile = firstTile; tile <= lastTile; tile++)
+    {
+      long tileEndTimestamp = ((tile + 1L) * m_tileDuration) - 1L;
+      int tileStart = index;
+      while (index < fetchedCount && timestamps[index] <= tileEndTimestamp)
+      {
+        index++;
+      }
+
+      // Empty tiles before the newest data are cached too so gaps in the data don't cause repeated fetches. The tile
+      // holding the newest data and those after it are still open to new data, so are fetched again every time.
+      GraphDataBuffer tileData = new GraphDataBuffer(index - tileStart, m_fetchBuffer.getSeriesCount());
+      tileData.addAll(m_fetchBuffer, tileStart, index - tileStart);
+      if (tileEndTimestamp < m_newestTimestamp)
+      {
+        m_tiles.put(tile, tileData);
+        m_cachedBytes += tileBytes(tileData);
+      }
+      else
+      {
+        m_openTiles.put(tile, tileData);
+      }
+    }
+  }
+
+  private void evict()
+  {
+    Iterator<Map.Entry<Long, GraphDataBuffer>> iterator = m_tiles.entrySet().iterator();
+    while (m_cachedBytes > m_maxBytes && iterator.hasNext())
+    {
+      GraphDataBuffer tileData = iterator.next().getValue();
+      iterator.remove();
+      m_cachedBytes -= tileBytes(tileData);
+      m_evictionCount++;
+    }
+  }
+
+  private long tileIndex(long timestamp)
+  {
+    long index = timestamp / m_tileDuration;
+    if (timestamp < 0L && index * m_tileDuration != timestamp)
+    {
+      index--;
+    }
+    return index;
+  }
+
+  private static long tileBytes(GraphDataBuffer tileData)
+  {
+    return BYTES_PER_TILE + ((long)tileData.capacity() * (BYTES_PER_TIMESTAMP + (BYTES_PER_VALUE * tileData.getSeriesCount())));
+  }
+
+  private static void copyRange(GraphDataBuffer source, GraphDataBuffer destination, long startTimestamp, long endTimestamp)
+  {
+    int first = source.lowerBound(startTimestamp);
+    int last = endTimestamp == Long.MAX_VALUE ? source.size() : source.lowerBound(endTimestamp + 1L);
+    if (last > first)
+    {
+      destination.addAll(source, first, last - first);
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Keeps a long history resident in compressed blocks, using delta-of-delta encoding for timestamps and XOR encoding for
+// values as described for Facebook's Gorilla. Regularly sampled data usually costs one or two bytes per entry, and only
+// the blocks overlapping a requested period are decoded.
+public class CompressedSeriesStore implements GraphDataBufferProvider, PeriodLabelProvider
+{
+  private static final int DEFAULT_ENTRIES_PER_BLOCK = 1024;
+  private static final int VALUE_BITS = Float.SIZE;
+  private static final int VALUE_LEADING_ZEROS_BITS = 5;
+  private static final int VALUE_MEANINGFUL_BITS_BITS = 5;
+  private static final int BLOCK_OVERHEAD_BYTES = 64;
+
+  private final int m_entriesPerBlock;
+
+  // Sealed blocks. Each block's first and last timestamps are kept uncompressed so range lookups can skip blocks.
+  private final ArrayList<long[]> m_blocks = new ArrayList<>();
+  private long[] m_blockFirstTimestamps = new long[16];
+  private long[] m_blockLastTimestamps = new long[16];
+  private int[] m_blockCounts = new int[16];
+  private long m_sealedBytes = 0L;
+
+  private final BitOutput m_openBlock;
+  private int m_openCount = 0;
+  private long m_openFirstTimestamp = 0L;
+  private long m_lastTimestamp = Long.MIN_VALUE;
+  private long m_lastDelta = 0L;
+  private int m_lastValueBits = 0;
+  private int m_lastLeadingZeros = -1;
+  private int m_lastTrailingZeros = 0;
+  private long m_count = 0L;
+
+  private final BitInput m_reader = new BitInput();
+
+  public CompressedSeriesStore()
+  {
+    this(DEFAULT_ENTRIES_PER_BLOCK);
+  }
+
+  public CompressedSeriesStore(int entriesPerBlock)
+  {
+    if (entriesPerBlock < 2)
+    {
+      throw new IllegalArgumentException("Blocks must hold at least two entries.");
+    }
+    m_entriesPerBlock = entriesPerBlock;
+    m_openBlock = new BitOutput(entriesPerBlock / 4);
+  }
+
+  public synchronized void append(long timestamp, float value)
+  {
+    if (m_count > 0L && timestamp <= m_lastTimestamp)
+    {
+      throw new IllegalArgumentException("Entries must be appended in ascending timestamp order.");
+    }
+
+    int valueBits = Float.floatToRawIntBits(value);
+    if (m_openCount == 0)
+    {
+      m_openFirstTimestamp = timestamp;
+      m_openBlock.writeBits(timestamp, Long.SIZE);
+      m_openBlock.writeBits(valueBits, VALUE_BITS);
+      m_lastDelta = 0L;
+      m_lastLeadingZeros = -1;
+    }
+    else
+    {
+      long delta = timestamp - m_lastTimestamp;
+      writeDeltaOfDelta(delta - m_lastDelta);
+      writeValue(valueBits ^ m_lastValueBits);
+      m_lastDelta = delta;
+    }
+    m_lastTimestamp = timestamp;
+    m_lastValueBits = valueBits;
+    m_openCount++;
+    m_count++;
+
+    if (m_openCount == m_entriesPerBlock)
+    {
+      sealOpenBlock();
+    }
+  }
+
+  public void append(@NonNull long[] timestamps, @NonNull float[] values, int offset, int count)
+  {
+    if (timestamps.length != values.length)
+    {
+      throw new IllegalArgumentException("The number of timestamps must match the number of values.");
+    }
+    for (int i = offset; i < offset + count; i++)
+    {
+      append(timestamps[i], values[i]);
+    }
+  }
+
+  public void appendAll(@NonNull GraphDataBuffer data)
+  {
+    append(data.getTimestamps(), data.getValues(), 0, data.size());
+  }
+
+  public synchronized void clear()
+  {
+    m_blocks.clear();
+    m_sealedBytes = 0L;
+    m_openBlock.clear();
+    m_openCount = 0;
+    m_lastTimestamp = Long.MIN_VALUE;
+    m_count = 0L;
+  }
+
+  public synchronized long size()
+  {
+    return m_count;
+  }
+
+  public synchronized int getBlockCount()
+  {
+    return m_blocks.size() + (m_openCount > 0 ? 1 : 0);
+  }
+
+  public synchronized long getCompressedBytes()
+  {
+    return m_sealedBytes + BLOCK_OVERHEAD_BYTES + (m_openBlock.getWords().length * (long)(Long.SIZE / Byte.SIZE));
+  }
+
+  @Override
+  public synchronized void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp)
+  {
+    int blockCount = m_blocks.size();
+    int block = firstBlockEndingAtOrAfter(startTimestamp);
+    for (; block < blockCount && m_blockFirstTimestamps[block] <= endTimestamp; block++)
+    {
+      decodeBlock(m_blocks.get(block), m_blockCounts[block], startTimestamp, endTimestamp, buffer);
+    }
+    if (m_openCount > 0 && m_openFirstTimestamp <= endTimestamp && m_lastTimestamp >= startTimestamp)
+    {
+      decodeBlock(m_openBlock.getWords(), m_openCount, startTimestamp, endTimestamp, buffer);
+    }
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data)
+  {
+    return TimeAxisLabelData.autoLabel(data);
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return TimeAxisLabelData.autoLabel(startTimestamp, endTimestamp);
+  }
+
+  // Buckets as in Gorilla, but with a 64 bit fallback since timestamps here are milliseconds rather than seconds.
+  private void writeDeltaOfDelta(long deltaOfDelta)
+  {
+    if (deltaOfDelta == 0L)
+    {
+      m_openBlock.writeBits(0L, 1);
+    }
+    else if (deltaOfDelta >= -63L && deltaOfDelta <= 64L)
+    {
+      m_openBlock.writeBits(0x2L, 2);
+      m_openBlock.writeBits(deltaOfDelta + 63L, 7);
+    }
+    else if (deltaOfDelta >= -255L && deltaOfDelta <= 256L)
+    {
+      m_openBlock.writeBits(0x6L, 3);
+      m_openBlock.writeBits(deltaOfDelta + 255L, 9);
+    }
+    else if (deltaOfDelta >= -2047L && deltaOfDelta <= 2048L)
+    {
+      m_openBlock.writeBits(0xEL, 4);
+      m_openBlock.writeBits(deltaOfDelta + 2047L, 12);
+    }
+    else
+    {
+      m_openBlock.writeBits(0xFL, 4);
+      m_openBlock.writeBits(deltaOfDelta, Long.SIZE);
+    }
+  }
+
+  private void writeValue(int xor)
+  {
+    if (xor == 0)
+    {
+      m_openBlock.writeBits(0L, 1);
+    }
+    else
+    {
+      int leadingZeros = Integer.numberOfLeadingZeros(xor);
+      int trailingZeros = Integer.numberOfTrailingZeros(xor);
+      if (m_lastLeadingZeros != -1 && leadingZeros >= m_lastLeadingZeros && trailingZeros >= m_lastTrailingZeros)
+      {
+        // The meaningful bits fit inside the previous window, so reuse it.
+        m_openBlock.writeBits(0x2L, 2);
+        m_openBlock.writeBits(xor >>> m_lastTrailingZeros, VALUE_BITS - m_lastLeadingZeros - m_lastTrailingZeros);
+      }
+      else
+      {
+        int meaningfulBits = VALUE_BITS - leadingZeros - trailingZeros;
+        m_openBlock.writeBits(0x3L, 2);
+        m_openBlock.writeBits(leadingZeros, VALUE_LEADING_ZEROS_BITS);
+        m_openBlock.writeBits(meaningfulBits - 1, VALUE_MEANINGFUL_BITS_BITS);
+        m_openBlock.writeBits(xor >>> trailingZeros, meaningfulBits);
+        m_lastLeadingZeros = leadingZeros;
+        m_lastTrailingZeros = trailingZeros;
+      }
+    }
+  }
+
+  private void decodeBlock(long[] words, int count, long startTimestamp, long endTimestamp, GraphDataBuffer buffer)
+  {
+    BitInput reader = m_reader;
+    reader.reset(words);
+    long timestamp = reader.readBits(Long.SIZE);
+    int valueBits = (int)reader.readBits(VALUE_BITS);
+    long delta = 0L;
+    int leadingZeros = 0;
+    int trailingZeros = 0;
+    for (int i = 0; i < count && timestamp <= endTimestamp; i++)
+    {
+      if (i > 0)
+      {
+        delta += readDeltaOfDelta(reader);
+        timestamp += delta;
+
+        if (reader.readBit())
+        {
+          if (reader.readBit())
+          {
+            leadingZeros = (int)reader.readBits(VALUE_LEADING_ZEROS_BITS);
+            int meaningfulBits = (int)reader.readBits(VALUE_MEANINGFUL_BITS_BITS) + 1;
+            trailingZeros = VALUE_BITS - leadingZeros - meaningfulBits;
+          }
+          valueBits ^= (int)reader.readBits(VALUE_BITS - leadingZeros - trailingZeros) << trailingZeros;
+        }
+      }
+
+      if (timestamp >= startTimestamp && timestamp <= endTimestamp)
+      {
+        buffer.add(timestamp, Float.intBitsToFloat(valueBits));
+      }
+    }
+  }
+
+  private static long readDeltaOfDelta(BitInput reader)
+  {
+    long deltaOfDelta = 0L;
+    if (reader.readBit())
+    {
+      if (!reader.readBit())
+      {
+        deltaOfDelta = reader.readBits(7) - 63L;
+      }
+      else if (!reader.readBit())
+      {
+        deltaOfDelta = reader.readBits(9) - 255L;
+      }
+      else if (!reader.readBit())
+      {
+        deltaOfDelta = reader.readBits(12) - 2047L;
+      }
+      else
+      {
+        deltaOfDelta = reader.readBits(Long.SIZE);
+      }
+    }
+    return deltaOfDelta;
+  }
+
+  private void sealOpenBlock()
+  {
+    int blockIndex = m_blocks.size();
+    if (blockIndex == m_blockCounts.length)
+    {
+      int capacity = blockIndex * 2;
+      m_blockFirstTimestamps = Arrays.copyOf(m_blockFirstTimestamps, capacity);
+      m_blockLastTimestamps = Arrays.copyOf(m_blockLastTimestamps, capacity);
+      m_blockCounts = Arrays.copyOf(m_blockCounts, capacity);
+    }
+
+    long[] words = m_openBlock.toWordArray();
+    m_blocks.add(words);
+    m_blockFirstTimestamps[blockIndex] = m_openFirstTimestamp;
+    m_blockLastTimestamps[blockIndex] = m_lastTimestamp;
+    m_blockCounts[blockIndex] = m_openCount;
+    m_sealedBytes += BLOCK_OVERHEAD_BYTES + (words.length * (long)(Long.SIZE / Byte.SIZE));
+
+    m_openBlock.clear();
+    m_openCount = 0;
+  }
+
+  private int firstBlockEndingAtOrAfter(long timestamp)
+  {
+    int low = 0;
+    int high = m_blocks.size();
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (m_blockLastTimestamps[middle] < timestamp)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
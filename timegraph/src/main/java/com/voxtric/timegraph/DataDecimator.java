@@ -0,0 +1,10 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+public interface DataDecimator
+{
+  // Fills 'destination' with a reduced copy of 'source' suitable for drawing 'source' across 'columnCount' pixel columns.
+  // Implementations must keep the first and last entries so consecutive decimations join up.
+  void decimate(@NonNull GraphDataBuffer source, @NonNull GraphDataBuffer destination, int columnCount);
+}
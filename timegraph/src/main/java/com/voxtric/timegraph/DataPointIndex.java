@@ -0,0 +1,175 @@
+package com.voxtric.timegraph;
+
+import java.util.Arrays;
+
+// Hit testing over the displayed data points. Points are stored in time order in primitive arrays, so a lookup is a binary
+// search on x followed by a bounded scan of the neighbours either side.
+public class DataPointIndex
+{
+  private static final int MAX_NEIGHBOURS_CHECKED = 256;
+
+  private long[] m_timestamps;
+  private float[] m_values;
+  private float[] m_xCoords;
+  private float[] m_yCoords;
+  private int m_count = 0;
+
+  // Mirrors the transform uniforms of the data line so taps map onto the geometry as currently drawn.
+  private volatile float m_xOffset = 0.0f;
+  private volatile float m_xScale = 1.0f;
+  private volatile float m_xScalePosition = 0.0f;
+
+  DataPointIndex(int capacity)
+  {
+    capacity = Math.max(capacity, 1);
+    m_timestamps = new long[capacity];
+    m_values = new float[capacity];
+    m_xCoords = new float[capacity];
+    m_yCoords = new float[capacity];
+  }
+
+  // Coordinates are normalised to 0-1 across the geometry, with y increasing upwards.
+  void add(long timestamp, float value, float xCoord, float yCoord)
+  {
+    if (m_count == m_timestamps.length)
+    {
+      int capacity = m_count * 2;
+      m_timestamps = Arrays.copyOf(m_timestamps, capacity);
+      m_values = Arrays.copyOf(m_values, capacity);
+      m_xCoords = Arrays.copyOf(m_xCoords, capacity);
+      m_yCoords = Arrays.copyOf(m_yCoords, capacity);
+    }
+    m_timestamps[m_count] = timestamp;
+    m_values[m_count] = value;
+    m_xCoords[m_count] = xCoord;
+    m_yCoords[m_count] = yCoord;
+    m_count++;
+  }
+
+  void setXOffset(float xOffset)
+  {
+    m_xOffset = xOffset;
+  }
+
+  void setXScale(float xScale, float xScalePosition)
+  {
+    m_xScale = xScale;
+    m_xScalePosition = xScalePosition;
+  }
+
+  public int size()
+  {
+    return m_count;
+  }
+
+  public boolean isEmpty()
+  {
+    return m_count == 0;
+  }
+
+  public long getTimestamp(int index)
+  {
+    return m_timestamps[index];
+  }
+
+  public float getValue(int index)
+  {
+    return m_values[index];
+  }
+
+  // Position of a point in view space, normalised to 0-1 from the left.
+  public float getNormalisedX(int index)
+  {
+    return toNormalisedViewX(m_xCoords[index]);
+  }
+
+  // Position of a point in view space, normalised to 0-1 from the top.
+  public float getNormalisedY(int index)
+  {
+    return 1.0f - m_yCoords[index];
+  }
+
+  // Index of the closest point within maxPixelDistance of the given pixel position, or -1 if there is none.
+  public int findClosest(float pixelX, float pixelY, int width, int height, float maxPixelDistance)
+  {
+    int closestIndex = -1;
+    if (m_count > 0 && width > 0 && height > 0)
+    {
+      float maxDistanceSquared = maxPixelDistance * maxPixelDistance;
+      float closestDistanceSquared = maxDistanceSquared;
+      int centre = lowerBound(toXCoord(pixelX / width));
+
+      for (int direction = -1; direction <= 1; direction += 2)
+      {
+        int index = direction < 0 ? centre - 1 : centre;
+        for (int checked = 0; checked < MAX_NEIGHBOURS_CHECKED && index >= 0 && index < m_count; checked++)
+        {
+          float xDifference = pixelX - (getNormalisedX(index) * width);
+          if (xDifference * xDifference >= closestDistanceSquared)
+          {
+            break;
+          }
+          float yDifference = pixelY - (getNormalisedY(index) * height);
+          float distanceSquared = (xDifference * xDifference) + (yDifference * yDifference);
+          if (distanceSquared < closestDistanceSquared)
+          {
+            closestDistanceSquared = distanceSquared;
+            closestIndex = index;
+          }
+          index += direction;
+        }
+      }
+    }
+    return closestIndex;
+  }
+
+  // Index of the point closest in time to the given horizontal position, or -1 if there are no points.
+  public int findClosestX(float normalisedX)
+  {
+    int closestIndex = -1;
+    if (m_count > 0)
+    {
+      float xCoord = toXCoord(normalisedX);
+      int index = lowerBound(xCoord);
+      if (index == m_count || (index > 0 && xCoord - m_xCoords[index - 1] < m_xCoords[index] - xCoord))
+      {
+        index--;
+      }
+      closestIndex = index;
+    }
+    return closestIndex;
+  }
+
+  private float toNormalisedViewX(float xCoord)
+  {
+    float openGlX = (xCoord * 2.0f) - 1.0f;
+    float transformedX = openGlX - ((m_xScalePosition - openGlX) * (m_xScale - 1.0f)) + m_xOffset;
+    return (transformedX + 1.0f) * 0.5f;
+  }
+
+  private float toXCoord(float normalisedViewX)
+  {
+    float transformedX = (normalisedViewX * 2.0f) - 1.0f;
+    float openGlX = (transformedX - m_xOffset + (m_xScalePosition * (m_xScale - 1.0f))) / m_xScale;
+    return (openGlX + 1.0f) * 0.5f;
+  }
+
+  private int lowerBound(float xCoord)
+  {
+    int low = 0;
+    int high = m_count;
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (m_xCoords[middle] < xCoord)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
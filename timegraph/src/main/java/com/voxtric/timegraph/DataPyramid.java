@@ -0,0 +1,150 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+class DataPyramid
+{
+  private static final int BRANCHING_FACTOR = 4;
+  private static final int MIN_BUCKETS = 2;
+
+  // Level n groups BRANCHING_FACTOR^n source entries per bucket. Bucket boundaries are implicit, so the first and last
+  // entries of a bucket are found from its index and only the positions of the minimum and maximum are stored.
+  private final ArrayList<int[]> m_minIndices = new ArrayList<>();
+  private final ArrayList<int[]> m_maxIndices = new ArrayList<>();
+  private int m_levelCount = 1;
+  private GraphDataBuffer m_source = null;
+
+  void build(@NonNull GraphDataBuffer source)
+  {
+    m_source = source;
+    m_levelCount = 1;
+
+    int sourceCount = source.size();
+    float[] values = source.getValues();
+    int bucketSize = BRANCHING_FACTOR;
+    int previousBucketCount = sourceCount;
+    int[] previousMinIndices = null;
+    int[] previousMaxIndices = null;
+    while ((sourceCount + bucketSize - 1) / bucketSize >= MIN_BUCKETS)
+    {
+      int bucketCount = (sourceCount + bucketSize - 1) / bucketSize;
+      int levelIndex = m_levelCount - 1;
+      int[] minIndices = levelIndex < m_minIndices.size() ? m_minIndices.get(levelIndex) : null;
+      int[] maxIndices = levelIndex < m_maxIndices.size() ? m_maxIndices.get(levelIndex) : null;
+      if (minIndices == null || minIndices.length < bucketCount)
+      {
+        minIndices = new int[bucketCount];
+        maxIndices = new int[bucketCount];
+        if (levelIndex < m_minIndices.size())
+        {
+          m_minIndices.set(levelIndex, minIndices);
+          m_maxIndices.set(levelIndex, maxIndices);
+        }
+        else
+        {
+          m_minIndices.add(minIndices);
+          m_maxIndices.add(maxIndices);
+        }
+      }
+
+      for (int bucket = 0; bucket < bucketCount; bucket++)
+      {
+        int childStart = bucket * BRANCHING_FACTOR;
+        int childEnd = Math.min(childStart + BRANCHING_FACTOR, previousBucketCount);
+        int minIndex = previousMinIndices == null ? childStart : previousMinIndices[childStart];
+        int maxIndex = previousMaxIndices == null ? childStart : previousMaxIndices[childStart];
+        for (int child = childStart + 1; child < childEnd; child++)
+        {
+          int childMinIndex = previousMinIndices == null ? child : previousMinIndices[child];
+          int childMaxIndex = previousMaxIndices == null ? child : previousMaxIndices[child];
+          if (values[childMinIndex] < values[minIndex])
+          {
+            minIndex = childMinIndex;
+          }
+          if (values[childMaxIndex] > values[maxIndex])
+          {
+            maxIndex = childMaxIndex;
+          }
+        }
+        minIndices[bucket] = minIndex;
+        maxIndices[bucket] = maxIndex;
+      }
+
+      previousMinIndices = minIndices;
+      previousMaxIndices = maxIndices;
+      previousBucketCount = bucketCount;
+      bucketSize *= BRANCHING_FACTOR;
+      m_levelCount++;
+    }
+  }
+
+  int getLevelCount()
+  {
+    return m_levelCount;
+  }
+
+  // Picks the coarsest level that still provides at least one bucket per pixel column across the visible period.
+  int chooseLevel(int columnCount, long visibleTimeDifference)
+  {
+    int level = 0;
+    if (m_source != null && m_source.size() > 1 && columnCount > 0)
+    {
+      double dataTimeDifference = Math.max(m_source.getLastTimestamp() - m_source.getFirstTimestamp(), 1L);
+      double visibleEntries = m_source.size() * Math.min(visibleTimeDifference / dataTimeDifference, 1.0);
+      double bucketSize = BRANCHING_FACTOR;
+      while (level + 1 < m_levelCount && visibleEntries / bucketSize >= columnCount)
+      {
+        level++;
+        bucketSize *= BRANCHING_FACTOR;
+      }
+    }
+    return level;
+  }
+
+  // Writes each bucket's first, minimum, maximum and last entries in time order. Level 0 is the source data itself.
+  void writeLevel(int level, @NonNull GraphDataBuffer destination)
+  {
+    destination.clear();
+    int sourceCount = m_source.size();
+    long[] timestamps = m_source.getTimestamps();
+    float[] values = m_source.getValues();
+    if (level <= 0)
+    {
+      destination.addAll(timestamps, values, 0, sourceCount);
+      return;
+    }
+
+    int[] minIndices = m_minIndices.get(level - 1);
+    int[] maxIndices = m_maxIndices.get(level - 1);
+    int bucketSize = 1;
+    for (int i = 0; i < level; i++)
+    {
+      bucketSize *= BRANCHING_FACTOR;
+    }
+    int bucketCount = (sourceCount + bucketSize - 1) / bucketSize;
+    destination.ensureCapacity(bucketCount * 4);
+    for (int bucket = 0; bucket < bucketCount; bucket++)
+    {
+      int first = bucket * bucketSize;
+      int last = Math.min(first + bucketSize, sourceCount) - 1;
+      int lower = Math.min(minIndices[bucket], maxIndices[bucket]);
+      int upper = Math.max(minIndices[bucket], maxIndices[bucket]);
+
+      destination.add(timestamps[first], values[first]);
+      if (lower != first && lower != last)
+      {
+        destination.add(timestamps[lower], values[lower]);
+      }
+      if (upper != lower && upper != first && upper != last)
+      {
+        destination.add(timestamps[upper], values[upper]);
+      }
+      if (last != first)
+      {
+        destination.add(timestamps[last], values[last]);
+      }
+    }
+  }
+}
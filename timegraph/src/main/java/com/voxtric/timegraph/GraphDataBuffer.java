@@ -0,0 +1,307 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+public class GraphDataBuffer
+{
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private long[] m_timestamps;
+  private float[] m_values;
+  // Every series shares the timestamps. The first series is always m_values, so single series callers are unaffected.
+  private float[][] m_seriesValues;
+  private int m_count = 0;
+
+  public GraphDataBuffer()
+  {
+    this(DEFAULT_CAPACITY, 1);
+  }
+
+  public GraphDataBuffer(int capacity)
+  {
+    this(capacity, 1);
+  }
+
+  public GraphDataBuffer(int capacity, int seriesCount)
+  {
+    if (seriesCount <= 0)
+    {
+      throw new IllegalArgumentException("Series count must be greater than zero.");
+    }
+    capacity = Math.max(capacity, 1);
+    m_timestamps = new long[capacity];
+    m_seriesValues = new float[seriesCount][];
+    for (int series = 0; series < seriesCount; series++)
+    {
+      m_seriesValues[series] = new float[capacity];
+    }
+    m_values = m_seriesValues[0];
+  }
+
+  public int getSeriesCount()
+  {
+    return m_seriesValues.length;
+  }
+
+  // Providers of multi-series data call this before adding entries. Clears the buffer when the series count changes.
+  public void setSeriesCount(int seriesCount)
+  {
+    if (seriesCount <= 0)
+    {
+      throw new IllegalArgumentException("Series count must be greater than zero.");
+    }
+    if (seriesCount != m_seriesValues.length)
+    {
+      float[][] seriesValues = Arrays.copyOf(m_seriesValues, seriesCount);
+      for (int series = m_seriesValues.length; series < seriesCount; series++)
+      {
+        seriesValues[series] = new float[m_timestamps.length];
+      }
+      m_seriesValues = seriesValues;
+      m_count = 0;
+    }
+  }
+
+  public int size()
+  {
+    return m_count;
+  }
+
+  public boolean isEmpty()
+  {
+    return m_count == 0;
+  }
+
+  public int capacity()
+  {
+    return m_timestamps.length;
+  }
+
+  public void clear()
+  {
+    m_count = 0;
+  }
+
+  public void ensureCapacity(int capacity)
+  {
+    if (capacity > m_timestamps.length)
+    {
+      int newCapacity = Math.max(capacity, m_timestamps.length * 2);
+      m_timestamps = Arrays.copyOf(m_timestamps, newCapacity);
+      for (int series = 0; series < m_seriesValues.length; series++)
+      {
+        m_seriesValues[series] = Arrays.copyOf(m_seriesValues[series], newCapacity);
+      }
+      m_values = m_seriesValues[0];
+    }
+  }
+
+  public void add(long timestamp, float value)
+  {
+    requireSingleSeries();
+    if (m_count == m_timestamps.length)
+    {
+      ensureCapacity(m_count + 1);
+    }
+    m_timestamps[m_count] = timestamp;
+    m_values[m_count] = value;
+    m_count++;
+  }
+
+  public void add(long timestamp, @NonNull float[] values)
+  {
+    if (values.length != m_seriesValues.length)
+    {
+      throw new IllegalArgumentException("Expected a value for each of the " + m_seriesValues.length + " series.");
+    }
+    if (m_count == m_timestamps.length)
+    {
+      ensureCapacity(m_count + 1);
+    }
+    m_timestamps[m_count] = timestamp;
+    for (int series = 0; series < values.length; series++)
+    {
+      m_seriesValues[series][m_count] = values[series];
+    }
+    m_count++;
+  }
+
+  public void addAll(@NonNull long[] timestamps, @NonNull float[] values, int offset, int count)
+  {
+    requireSingleSeries();
+    ensureCapacity(m_count + count);
+    System.arraycopy(timestamps, offset, m_timestamps, m_count, count);
+    System.arraycopy(values, offset, m_values, m_count, count);
+    m_count += count;
+  }
+
+  public void addAll(@NonNull GraphDataBuffer source, int offset, int count)
+  {
+    requireMatchingSeries(source);
+    ensureCapacity(m_count + count);
+    System.arraycopy(source.m_timestamps, offset, m_timestamps, m_count, count);
+    for (int series = 0; series < m_seriesValues.length; series++)
+    {
+      System.arraycopy(source.m_seriesValues[series], offset, m_seriesValues[series], m_count, count);
+    }
+    m_count += count;
+  }
+
+  public void addAll(@NonNull GraphData[] data)
+  {
+    requireSingleSeries();
+    ensureCapacity(m_count + data.length);
+    for (GraphData datum : data)
+    {
+      m_timestamps[m_count] = datum.timestamp;
+      m_values[m_count] = datum.value;
+      m_count++;
+    }
+  }
+
+  public void insert(int index, @NonNull long[] timestamps, @NonNull float[] values, int offset, int count)
+  {
+    requireSingleSeries();
+    if (index < 0 || index > m_count)
+    {
+      throw new IndexOutOfBoundsException("Insertion index " + index + " is outside the buffer of size " + m_count + ".");
+    }
+    ensureCapacity(m_count + count);
+    System.arraycopy(m_timestamps, index, m_timestamps, index + count, m_count - index);
+    System.arraycopy(m_values, index, m_values, index + count, m_count - index);
+    System.arraycopy(timestamps, offset, m_timestamps, index, count);
+    System.arraycopy(values, offset, m_values, index, count);
+    m_count += count;
+  }
+
+  public void insert(int index, @NonNull GraphDataBuffer source, int offset, int count)
+  {
+    requireMatchingSeries(source);
+    if (index < 0 || index > m_count)
+    {
+      throw new IndexOutOfBoundsException("Insertion index " + index + " is outside the buffer of size " + m_count + ".");
+    }
+    ensureCapacity(m_count + count);
+    System.arraycopy(m_timestamps, index, m_timestamps, index + count, m_count - index);
+    System.arraycopy(source.m_timestamps, offset, m_timestamps, index, count);
+    for (int series = 0; series < m_seriesValues.length; series++)
+    {
+      float[] values = m_seriesValues[series];
+      System.arraycopy(values, index, values, index + count, m_count - index);
+      System.arraycopy(source.m_seriesValues[series], offset, values, index, count);
+    }
+    m_count += count;
+  }
+
+  public void remove(int index, int count)
+  {
+    if (index < 0 || count < 0 || index + count > m_count)
+    {
+      throw new IndexOutOfBoundsException("Removal range " + index + "+" + count + " is outside the buffer of size " + m_count + ".");
+    }
+    System.arraycopy(m_timestamps, index + count, m_timestamps, index, m_count - index - count);
+    for (float[] values : m_seriesValues)
+    {
+      System.arraycopy(values, index + count, values, index, m_count - index - count);
+    }
+    m_count -= count;
+  }
+
+  // Index of the first entry with a timestamp not less than the one given, or size() if there is none.
+  public int lowerBound(long timestamp)
+  {
+    int low = 0;
+    int high = m_count;
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (m_timestamps[middle] < timestamp)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  public void set(@NonNull GraphDataBuffer other)
+  {
+    setSeriesCount(other.m_seriesValues.length);
+    m_count = 0;
+    addAll(other, 0, other.m_count);
+  }
+
+  public long getTimestamp(int index)
+  {
+    return m_timestamps[index];
+  }
+
+  public float getValue(int index)
+  {
+    return m_values[index];
+  }
+
+  public float getValue(int series, int index)
+  {
+    return m_seriesValues[series][index];
+  }
+
+  public long getFirstTimestamp()
+  {
+    return m_timestamps[0];
+  }
+
+  public long getLastTimestamp()
+  {
+    return m_timestamps[m_count - 1];
+  }
+
+  // Direct access to the backing arrays. Only the first size() entries are valid.
+  public long[] getTimestamps()
+  {
+    return m_timestamps;
+  }
+
+  public float[] getValues()
+  {
+    return m_values;
+  }
+
+  public float[] getValues(int series)
+  {
+    return m_seriesValues[series];
+  }
+
+  // Only the first series is included.
+  public GraphData[] toGraphDataArray()
+  {
+    GraphData[] data = new GraphData[m_count];
+    for (int i = 0; i < m_count; i++)
+    {
+      data[i] = new GraphData(m_timestamps[i], m_values[i]);
+    }
+    return data;
+  }
+
+  private void requireSingleSeries()
+  {
+    if (m_seriesValues.length != 1)
+    {
+      throw new IllegalStateException("Buffer holds " + m_seriesValues.length + " series, so a value is needed for each.");
+    }
+  }
+
+  private void requireMatchingSeries(GraphDataBuffer source)
+  {
+    if (source.m_seriesValues.length != m_seriesValues.length)
+    {
+      throw new IllegalArgumentException("Source buffer holds " + source.m_seriesValues.length + " series but this buffer holds " +
+                                         m_seriesValues.length + ".");
+    }
+  }
+}
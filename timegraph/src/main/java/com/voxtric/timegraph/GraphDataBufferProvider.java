@@ -0,0 +1,7 @@
+package com.voxtric.timegraph;
+
+public interface GraphDataBufferProvider
+{
+  void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp);
+  TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data);
+}
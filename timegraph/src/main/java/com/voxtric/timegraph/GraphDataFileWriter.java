@@ -0,0 +1,226 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Appends timestamp/value records to a file readable by MappedFileGraphDataProvider. Records are fixed width and must be
+// written in ascending timestamp order. A sidecar index file holds the timestamp of every INDEX_INTERVAL-th record.
+public class GraphDataFileWriter implements Closeable
+{
+  static final int MAGIC = 0x54474431; // "TGD1"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int RECORD_BYTES = (Long.SIZE + Float.SIZE) / Byte.SIZE;
+  static final int INDEX_ENTRY_BYTES = Long.SIZE / Byte.SIZE;
+  static final int INDEX_INTERVAL = 1024;
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+  static final String INDEX_FILE_SUFFIX = ".idx";
+
+  private static final int WRITE_BUFFER_RECORDS = 4096;
+
+  private final RandomAccessFile m_dataFile;
+  private final RandomAccessFile m_indexFile;
+  private final FileChannel m_dataChannel;
+  private final FileChannel m_indexChannel;
+  private final ByteBuffer m_recordBuffer;
+  private final ByteBuffer m_indexBuffer;
+
+  private long m_recordCount;
+  private long m_writtenRecordCount;
+  private long m_writtenIndexCount;
+  private long m_lastTimestamp = Long.MIN_VALUE;
+
+  public GraphDataFileWriter(@NonNull File file) throws IOException
+  {
+    m_dataFile = new RandomAccessFile(file, "rw");
+    m_indexFile = new RandomAccessFile(indexFileFor(file), "rw");
+    m_dataChannel = m_dataFile.getChannel();
+    m_indexChannel = m_indexFile.getChannel();
+    m_recordBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_RECORDS * RECORD_BYTES).order(BYTE_ORDER);
+    m_indexBuffer = ByteBuffer.allocateDirect(((WRITE_BUFFER_RECORDS / INDEX_INTERVAL) + 1) * INDEX_ENTRY_BYTES).order(BYTE_ORDER);
+
+    try
+    {
+      open();
+    }
+    catch (IOException e)
+    {
+      close();
+      throw e;
+    }
+  }
+
+  public long getRecordCount()
+  {
+    return m_recordCount;
+  }
+
+  public long getLastTimestamp()
+  {
+    return m_lastTimestamp;
+  }
+
+  public void append(long timestamp, float value) throws IOException
+  {
+    if (timestamp <= m_lastTimestamp && m_recordCount > 0L)
+    {
+      throw new IllegalArgumentException("Records must be appended in ascending timestamp order.");
+    }
+
+    if (!m_recordBuffer.hasRemaining())
+    {
+      flush();
+    }
+    if (m_recordCount % INDEX_INTERVAL == 0L)
+    {
+      m_indexBuffer.putLong(timestamp);
+    }
+    m_recordBuffer.putLong(timestamp);
+    m_recordBuffer.putFloat(value);
+    m_recordCount++;
+    m_lastTimestamp = timestamp;
+  }
+
+  public void append(@NonNull long[] timestamps, @NonNull float[] values, int offset, int count) throws IOException
+  {
+    if (timestamps.length != values.length)
+    {
+      throw new IllegalArgumentException("The number of timestamps must match the number of values.");
+    }
+    for (int i = offset; i < offset + count; i++)
+    {
+      append(timestamps[i], values[i]);
+    }
+  }
+
+  public void flush() throws IOException
+  {
+    m_recordBuffer.flip();
+    while (m_recordBuffer.hasRemaining())
+    {
+      m_dataChannel.write(m_recordBuffer, HEADER_BYTES + (m_writtenRecordCount * RECORD_BYTES) + m_recordBuffer.position());
+    }
+    m_writtenRecordCount = m_recordCount;
+    m_recordBuffer.clear();
+
+    // The index is written after the records it refers to, so readers never find index entries beyond the data.
+    m_indexBuffer.flip();
+    int indexEntryCount = m_indexBuffer.remaining() / INDEX_ENTRY_BYTES;
+    while (m_indexBuffer.hasRemaining())
+    {
+      m_indexChannel.write(m_indexBuffer, (m_writtenIndexCount * INDEX_ENTRY_BYTES) + m_indexBuffer.position());
+    }
+    m_writtenIndexCount += indexEntryCount;
+    m_indexBuffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    try
+    {
+      if (m_dataChannel.isOpen())
+      {
+        flush();
+      }
+    }
+    finally
+    {
+      m_dataFile.close();
+      m_indexFile.close();
+    }
+  }
+
+  static File indexFileFor(File file)
+  {
+    return new File(file.getPath() + INDEX_FILE_SUFFIX);
+  }
+
+  private void open() throws IOException
+  {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(BYTE_ORDER);
+    long length = m_dataChannel.size();
+    if (length < HEADER_BYTES)
+    {
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(INDEX_INTERVAL);
+      header.putInt(0);
+      header.flip();
+      m_dataChannel.truncate(0L);
+      while (header.hasRemaining())
+      {
+        m_dataChannel.write(header, header.position());
+      }
+      m_indexChannel.truncate(0L);
+      length = HEADER_BYTES;
+    }
+    else
+    {
+      readFully(m_dataChannel, header, 0L);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != INDEX_INTERVAL)
+      {
+        throw new IOException("Not a graph data file of a supported version.");
+      }
+    }
+
+    // Drop any partially written trailing record, e.g. after a crash mid-write.
+    m_recordCount = (length - HEADER_BYTES) / RECORD_BYTES;
+    m_dataChannel.truncate(HEADER_BYTES + (m_recordCount * RECORD_BYTES));
+    m_writtenRecordCount = m_recordCount;
+    if (m_recordCount > 0L)
+    {
+      m_lastTimestamp = readTimestamp(m_recordCount - 1L);
+    }
+
+    long expectedIndexCount = (m_recordCount + INDEX_INTERVAL - 1L) / INDEX_INTERVAL;
+    if (m_indexChannel.size() != expectedIndexCount * INDEX_ENTRY_BYTES)
+    {
+      rebuildIndex(expectedIndexCount);
+    }
+    m_writtenIndexCount = expectedIndexCount;
+  }
+
+  private void rebuildIndex(long indexCount) throws IOException
+  {
+    m_indexChannel.truncate(0L);
+    ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(BYTE_ORDER);
+    for (long i = 0L; i < indexCount; i++)
+    {
+      entry.clear();
+      entry.putLong(readTimestamp(i * INDEX_INTERVAL));
+      entry.flip();
+      while (entry.hasRemaining())
+      {
+        m_indexChannel.write(entry, (i * INDEX_ENTRY_BYTES) + entry.position());
+      }
+    }
+  }
+
+  private long readTimestamp(long record) throws IOException
+  {
+    ByteBuffer timestamp = ByteBuffer.allocate(Long.SIZE / Byte.SIZE).order(BYTE_ORDER);
+    readFully(m_dataChannel, timestamp, HEADER_BYTES + (record * RECORD_BYTES));
+    timestamp.flip();
+    return timestamp.getLong();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+  {
+    while (buffer.hasRemaining())
+    {
+      if (channel.read(buffer, position + buffer.position()) < 0)
+      {
+        throw new IOException("Unexpected end of graph data file.");
+      }
+    }
+  }
+}
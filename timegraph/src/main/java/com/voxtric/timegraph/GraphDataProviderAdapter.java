@@ -0,0 +1,75 @@
+package com.voxtric.timegraph;
+
+class GraphDataProviderAdapter implements GraphDataBufferProvider, PeriodLabelProvider
+{
+  final GraphDataProvider dataProvider;
+  private GraphData[] m_lastData = null;
+  private GraphDataBuffer m_lastBuffer = null;
+
+  private GraphData[] m_convertedData = null;
+  private GraphDataBuffer m_convertedBuffer = null;
+  private int m_convertedSize = 0;
+  private long m_convertedFirstTimestamp = 0L;
+  private long m_convertedLastTimestamp = 0L;
+
+  GraphDataProviderAdapter(GraphDataProvider dataProvider)
+  {
+    this.dataProvider = dataProvider;
+  }
+
+  @Override
+  public void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp)
+  {
+    m_lastData = dataProvider.getData(graph, startTimestamp, endTimestamp, visibleStartTimestamp, visibleEndTimestamp);
+    m_lastBuffer = buffer;
+    if (m_lastData != null)
+    {
+      buffer.addAll(m_lastData);
+    }
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data)
+  {
+    // Reuse the provider's own array when the buffer holds exactly what it returned, e.g. when not wrapped by a cache.
+    // Otherwise the buffer is converted only once for as long as it holds the same data, as converting allocates a
+    // GraphData per entry.
+    GraphData[] labelData;
+    if (data == m_lastBuffer && m_lastData != null && data.size() == m_lastData.length)
+    {
+      labelData = m_lastData;
+    }
+    else
+    {
+      if (data != m_convertedBuffer || data.size() != m_convertedSize ||
+          (data.size() > 0 && (data.getFirstTimestamp() != m_convertedFirstTimestamp ||
+                               data.getLastTimestamp() != m_convertedLastTimestamp)))
+      {
+        m_convertedData = data.toGraphDataArray();
+        m_convertedBuffer = data;
+        m_convertedSize = data.size();
+        m_convertedFirstTimestamp = data.size() > 0 ? data.getFirstTimestamp() : 0L;
+        m_convertedLastTimestamp = data.size() > 0 ? data.getLastTimestamp() : 0L;
+      }
+      labelData = m_convertedData;
+    }
+    return dataProvider.getLabelsForData(labelData);
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return dataProvider instanceof PeriodLabelProvider ?
+        ((PeriodLabelProvider)dataProvider).getLabelsForPeriod(startTimestamp, endTimestamp) : null;
+  }
+
+  GraphData[] getLastData()
+  {
+    return m_lastData;
+  }
+
+  boolean isLastBuffer(GraphDataBuffer buffer)
+  {
+    return buffer == m_lastBuffer;
+  }
+}
@@ -0,0 +1,85 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+public class LargestTriangleThreeBucketsDecimator implements DataDecimator
+{
+  private static final int DEFAULT_POINTS_PER_COLUMN = 2;
+
+  private final int m_pointsPerColumn;
+
+  public LargestTriangleThreeBucketsDecimator()
+  {
+    this(DEFAULT_POINTS_PER_COLUMN);
+  }
+
+  public LargestTriangleThreeBucketsDecimator(int pointsPerColumn)
+  {
+    if (pointsPerColumn <= 0)
+    {
+      throw new IllegalArgumentException("Points per column must be greater than zero.");
+    }
+    m_pointsPerColumn = pointsPerColumn;
+  }
+
+  @Override
+  public void decimate(@NonNull GraphDataBuffer source, @NonNull GraphDataBuffer destination, int columnCount)
+  {
+    destination.clear();
+    int sourceCount = source.size();
+    int threshold = Math.max(columnCount * m_pointsPerColumn, 3);
+    long[] timestamps = source.getTimestamps();
+    float[] values = source.getValues();
+    if (sourceCount <= threshold)
+    {
+      destination.addAll(timestamps, values, 0, sourceCount);
+      return;
+    }
+
+    destination.ensureCapacity(threshold);
+    destination.add(timestamps[0], values[0]);
+
+    // The first and last points are fixed, so the remaining points are split between threshold - 2 buckets.
+    double bucketSize = (double)(sourceCount - 2) / (threshold - 2);
+    int selectedIndex = 0;
+    for (int bucket = 0; bucket < threshold - 2; bucket++)
+    {
+      int bucketStart = (int)(bucket * bucketSize) + 1;
+      int bucketEnd = (int)((bucket + 1) * bucketSize) + 1;
+
+      // Average of the next bucket forms the third point of each triangle.
+      int nextBucketStart = bucketEnd;
+      int nextBucketEnd = Math.min((int)((bucket + 2) * bucketSize) + 1, sourceCount);
+      double averageTimestamp = 0.0;
+      double averageValue = 0.0;
+      for (int i = nextBucketStart; i < nextBucketEnd; i++)
+      {
+        averageTimestamp += timestamps[i] - timestamps[0];
+        averageValue += values[i];
+      }
+      int nextBucketCount = nextBucketEnd - nextBucketStart;
+      averageTimestamp /= nextBucketCount;
+      averageValue /= nextBucketCount;
+
+      double selectedTimestamp = timestamps[selectedIndex] - timestamps[0];
+      double selectedValue = values[selectedIndex];
+      double largestArea = -1.0;
+      int largestIndex = bucketStart;
+      for (int i = bucketStart; i < bucketEnd; i++)
+      {
+        double area = Math.abs((selectedTimestamp - averageTimestamp) * (values[i] - selectedValue) -
+                               (selectedTimestamp - (timestamps[i] - timestamps[0])) * (averageValue - selectedValue));
+        if (area > largestArea)
+        {
+          largestArea = area;
+          largestIndex = i;
+        }
+      }
+
+      destination.add(timestamps[largestIndex], values[largestIndex]);
+      selectedIndex = largestIndex;
+    }
+
+    destination.add(timestamps[sourceCount - 1], values[sourceCount - 1]);
+  }
+}
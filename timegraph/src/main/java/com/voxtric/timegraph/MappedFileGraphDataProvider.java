@@ -0,0 +1,249 @@
+package com.voxtric.timegraph;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+// Reads files written by GraphDataFileWriter through memory mappings, so opening a file costs almost no heap and a range
+// query only touches the pages it reads. The file may keep growing while open; new records are mapped on demand.
+public class MappedFileGraphDataProvider implements GraphDataBufferProvider, PeriodLabelProvider, Closeable
+{
+  private static final String TAG = "MappedFileGraphData";
+
+  // Each mapping must stay under 2GB, so map whole records in chunks of at most 1GB.
+  private static final long RECORDS_PER_CHUNK = (1L << 30) / GraphDataFileWriter.RECORD_BYTES;
+
+  private final File m_file;
+  private final RandomAccessFile m_dataFile;
+  private final FileChannel m_dataChannel;
+  private final ArrayList<MappedByteBuffer> m_chunks = new ArrayList<>();
+  private long m_recordCount = 0L;
+
+  private LongBuffer m_index = null;
+  private long m_indexCount = 0L;
+
+  private IOException m_readError = null;
+
+  public MappedFileGraphDataProvider(@NonNull File file) throws IOException
+  {
+    m_file = file;
+    m_dataFile = new RandomAccessFile(file, "r");
+    m_dataChannel = m_dataFile.getChannel();
+
+    try
+    {
+      ByteBuffer header = ByteBuffer.allocate(GraphDataFileWriter.HEADER_BYTES).order(GraphDataFileWriter.BYTE_ORDER);
+      while (header.hasRemaining())
+      {
+        if (m_dataChannel.read(header, header.position()) < 0)
+        {
+          throw new IOException("Graph data file is missing its header.");
+        }
+      }
+      header.flip();
+      if (header.getInt() != GraphDataFileWriter.MAGIC ||
+          header.getInt() != GraphDataFileWriter.VERSION ||
+          header.getInt() != GraphDataFileWriter.INDEX_INTERVAL)
+      {
+        throw new IOException("Not a graph data file of a supported version.");
+      }
+      remap();
+    }
+    catch (IOException e)
+    {
+      m_dataFile.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized void getData(TimeGraph graph, GraphDataBuffer buffer, long startTimestamp, long endTimestamp, long visibleStartTimestamp, long visibleEndTimestamp)
+  {
+    try
+    {
+      remap();
+      m_readError = null;
+    }
+    catch (IOException e)
+    {
+      // Carry on with whatever was mapped previously, so data appended since is missing until a read succeeds.
+      Log.w(TAG, "Failed to map new records of " + m_file + ".", e);
+      m_readError = e;
+    }
+
+    long first = lowerBound(startTimestamp);
+    long last = endTimestamp == Long.MAX_VALUE ? m_recordCount : lowerBound(endTimestamp + 1L);
+    buffer.ensureCapacity(buffer.size() + (int)(last - first));
+    for (long record = first; record < last; record++)
+    {
+      MappedByteBuffer chunk = m_chunks.get((int)(record / RECORDS_PER_CHUNK));
+      int offset = (int)(record % RECORDS_PER_CHUNK) * GraphDataFileWriter.RECORD_BYTES;
+      buffer.add(chunk.getLong(offset), chunk.getFloat(offset + (Long.SIZE / Byte.SIZE)));
+    }
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForData(GraphDataBuffer data)
+  {
+    return TimeAxisLabelData.autoLabel(data);
+  }
+
+  @Override
+  public TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp)
+  {
+    return TimeAxisLabelData.autoLabel(startTimestamp, endTimestamp);
+  }
+
+  public synchronized long getRecordCount()
+  {
+    return m_recordCount;
+  }
+
+  // The failure of the most recent read to map newly appended records, or null if it succeeded.
+  public synchronized IOException getReadError()
+  {
+    return m_readError;
+  }
+
+  public File getFile()
+  {
+    return m_file;
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    m_chunks.clear();
+    m_index = null;
+    m_dataFile.close();
+  }
+
+  // Maps any records appended since the last call, along with the index entries covering them.
+  private void remap() throws IOException
+  {
+    long recordCount = (m_dataChannel.size() - GraphDataFileWriter.HEADER_BYTES) / GraphDataFileWriter.RECORD_BYTES;
+    if (recordCount > m_recordCount)
+    {
+      int firstChunk = (int)(m_recordCount / RECORDS_PER_CHUNK);
+      int chunkCount = (int)((recordCount + RECORDS_PER_CHUNK - 1L) / RECORDS_PER_CHUNK);
+      for (int chunk = firstChunk; chunk < chunkCount; chunk++)
+      {
+        long chunkStart = chunk * RECORDS_PER_CHUNK;
+        long chunkRecords = Math.min(recordCount - chunkStart, RECORDS_PER_CHUNK);
+        MappedByteBuffer mapping = m_dataChannel.map(FileChannel.MapMode.READ_ONLY,
+                                                     GraphDataFileWriter.HEADER_BYTES + (chunkStart * GraphDataFileWriter.RECORD_BYTES),
+                                                     chunkRecords * GraphDataFileWriter.RECORD_BYTES);
+        mapping.order(GraphDataFileWriter.BYTE_ORDER);
+        if (chunk < m_chunks.size())
+        {
+          m_chunks.set(chunk, mapping);
+        }
+        else
+        {
+          m_chunks.add(mapping);
+        }
+      }
+      m_recordCount = recordCount;
+      remapIndex();
+    }
+  }
+
+  private void remapIndex()
+  {
+    // A missing or stale index only makes lookups slower, as records past the index are binary searched directly.
+    File indexFile = GraphDataFileWriter.indexFileFor(m_file);
+    long expectedIndexCount = (m_recordCount + GraphDataFileWriter.INDEX_INTERVAL - 1L) / GraphDataFileWriter.INDEX_INTERVAL;
+    long indexCount = Math.min(indexFile.length() / GraphDataFileWriter.INDEX_ENTRY_BYTES, expectedIndexCount);
+    if (indexCount > m_indexCount)
+    {
+      RandomAccessFile indexDataFile = null;
+      try
+      {
+        indexDataFile = new RandomAccessFile(indexFile, "r");
+        m_index = indexDataFile.getChannel()
+            .map(FileChannel.MapMode.READ_ONLY, 0L, indexCount * GraphDataFileWriter.INDEX_ENTRY_BYTES)
+            .order(GraphDataFileWriter.BYTE_ORDER)
+            .asLongBuffer();
+        m_indexCount = indexCount;
+      }
+      catch (IOException e)
+      {
+        Log.w(TAG, "Failed to map index " + indexFile + ", so searching records directly.", e);
+      }
+      finally
+      {
+        if (indexDataFile != null)
+        {
+          try
+          {
+            indexDataFile.close();
+          }
+          catch (IOException e)
+          {
+            Log.w(TAG, "Failed to close index " + indexFile + ".", e);
+          }
+        }
+      }
+    }
+  }
+
+  // Index of the first record with a timestamp not less than the one given, or the record count if there is none.
+  private long lowerBound(long timestamp)
+  {
+    long low = 0L;
+    long high = m_recordCount;
+    if (m_indexCount > 0L)
+    {
+      // Narrow the search to the span between two index entries so only a page or two of records are touched.
+      int indexLow = 0;
+      int indexHigh = (int)m_indexCount;
+      while (indexLow < indexHigh)
+      {
+        int middle = (indexLow + indexHigh) >>> 1;
+        if (m_index.get(middle) < timestamp)
+        {
+          indexLow = middle + 1;
+        }
+        else
+        {
+          indexHigh = middle;
+        }
+      }
+      low = Math.max(indexLow - 1L, 0L) * GraphDataFileWriter.INDEX_INTERVAL;
+      if (indexLow < m_indexCount)
+      {
+        high = Math.min((long)indexLow * GraphDataFileWriter.INDEX_INTERVAL, m_recordCount);
+      }
+    }
+
+    while (low < high)
+    {
+      long middle = (low + high) >>> 1;
+      if (timestampAt(middle) < timestamp)
+      {
+        low = middle + 1L;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private long timestampAt(long record)
+  {
+    MappedByteBuffer chunk = m_chunks.get((int)(record / RECORDS_PER_CHUNK));
+    return chunk.getLong((int)(record % RECORDS_PER_CHUNK) * GraphDataFileWriter.RECORD_BYTES);
+  }
+}
@@ -0,0 +1,67 @@
+package com.voxtric.timegraph;
+
+import androidx.annotation.NonNull;
+
+public class MinMaxDecimator implements DataDecimator
+{
+  private static final int MAX_POINTS_PER_COLUMN = 4;
+
+  @Override
+  public void decimate(@NonNull GraphDataBuffer source, @NonNull GraphDataBuffer destination, int columnCount)
+  {
+    destination.clear();
+    int sourceCount = source.size();
+    long[] timestamps = source.getTimestamps();
+    float[] values = source.getValues();
+    columnCount = Math.max(columnCount, 1);
+    if (sourceCount <= columnCount * MAX_POINTS_PER_COLUMN)
+    {
+      destination.addAll(timestamps, values, 0, sourceCount);
+      return;
+    }
+
+    // Each column keeps its first, minimum, maximum and last entries in time order, so peaks stay visible and
+    // neighbouring columns join up exactly as the full data would.
+    destination.ensureCapacity(columnCount * MAX_POINTS_PER_COLUMN);
+    long firstTimestamp = timestamps[0];
+    double columnsPerMillisecond = (double)columnCount / Math.max(timestamps[sourceCount - 1] - firstTimestamp, 1L);
+    int index = 0;
+    while (index < sourceCount)
+    {
+      long column = (long)((timestamps[index] - firstTimestamp) * columnsPerMillisecond);
+      int columnFirst = index;
+      int columnMin = index;
+      int columnMax = index;
+      index++;
+      while (index < sourceCount && (long)((timestamps[index] - firstTimestamp) * columnsPerMillisecond) == column)
+      {
+        if (values[index] < values[columnMin])
+        {
+          columnMin = index;
+        }
+        if (values[index] > values[columnMax])
+        {
+          columnMax = index;
+        }
+        index++;
+      }
+      int columnLast = index - 1;
+
+      destination.add(timestamps[columnFirst], values[columnFirst]);
+      int lower = Math.min(columnMin, columnMax);
+      int upper = Math.max(columnMin, columnMax);
+      if (lower != columnFirst && lower != columnLast)
+      {
+        destination.add(timestamps[lower], values[lower]);
+      }
+      if (upper != lower && upper != columnLast)
+      {
+        destination.add(timestamps[upper], values[upper]);
+      }
+      if (columnLast != columnFirst)
+      {
+        destination.add(timestamps[columnLast], values[columnLast]);
+      }
+    }
+  }
+}
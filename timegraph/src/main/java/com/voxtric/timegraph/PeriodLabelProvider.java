@@ -0,0 +1,10 @@
+package com.voxtric.timegraph;
+
+// Optionally implemented by data providers whose labels only depend on the period being labelled, such as those using
+// TimeAxisLabelData.autoLabel. TimeGraph then labels the view from its timestamps alone, without gathering up the data
+// within it for getLabelsForData.
+public interface PeriodLabelProvider
+{
+  // Returning null falls back to labelling with getLabelsForData.
+  TimeAxisLabelData[] getLabelsForPeriod(long startTimestamp, long endTimestamp);
+}
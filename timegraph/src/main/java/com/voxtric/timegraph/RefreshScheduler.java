@@ -0,0 +1,224 @@
+package com.voxtric.timegraph;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+public class RefreshScheduler implements Executor
+{
+  public static final int PRIORITY_VISIBLE = 0;
+  public static final int PRIORITY_HIDDEN = 1;
+
+  private static RefreshScheduler s_defaultScheduler = null;
+
+  private final PriorityQueue<Job> m_queue = new PriorityQueue<>();
+  private final Thread[] m_threads;
+  private long m_nextSequence = 0L;
+  private int m_activeCount = 0;
+  private boolean m_shutdown = false;
+
+  private long m_completedCount = 0L;
+  private long m_lastRunTime = 0L;
+  private long m_maxRunTime = 0L;
+  private long m_totalRunTime = 0L;
+
+  // Shared by every graph that isn't given its own scheduler. A single thread keeps synchronous providers serialised.
+  public static synchronized RefreshScheduler getDefault()
+  {
+    if (s_defaultScheduler == null)
+    {
+      s_defaultScheduler = new RefreshScheduler(1);
+    }
+    return s_defaultScheduler;
+  }
+
+  // With more than one thread, providers shared between graphs or prefetching must be safe to call concurrently.
+  public RefreshScheduler(int threadCount)
+  {
+    if (threadCount <= 0)
+    {
+      throw new IllegalArgumentException("Thread count must be greater than zero.");
+    }
+
+    m_threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++)
+    {
+      m_threads[i] = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runJobs();
+        }
+      }, "TimeGraph refresh " + i);
+      m_threads[i].setDaemon(true);
+      m_threads[i].start();
+    }
+  }
+
+  @Override
+  public void execute(@NonNull Runnable runnable)
+  {
+    execute(runnable, PRIORITY_VISIBLE);
+  }
+
+  // Lower priorities run first. Jobs of equal priority run in the order they were queued.
+  public synchronized void execute(@NonNull Runnable runnable, int priority)
+  {
+    if (m_shutdown)
+    {
+      throw new IllegalStateException("Refresh scheduler has been shut down.");
+    }
+    m_queue.add(new Job(runnable, priority, m_nextSequence++));
+    notify();
+  }
+
+  // Removes a job that hasn't started yet, returning whether it was found.
+  public synchronized boolean remove(@NonNull Runnable runnable)
+  {
+    Iterator<Job> iterator = m_queue.iterator();
+    while (iterator.hasNext())
+    {
+      if (iterator.next().runnable == runnable)
+      {
+        iterator.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized void shutdown()
+  {
+    m_shutdown = true;
+    m_queue.clear();
+    notifyAll();
+  }
+
+  public int getThreadCount()
+  {
+    return m_threads.length;
+  }
+
+  public synchronized int getQueueDepth()
+  {
+    return m_queue.size();
+  }
+
+  public synchronized int getActiveCount()
+  {
+    return m_activeCount;
+  }
+
+  public synchronized long getCompletedCount()
+  {
+    return m_completedCount;
+  }
+
+  public synchronized long getLastRunTimeMillis()
+  {
+    return m_lastRunTime;
+  }
+
+  public synchronized long getMaxRunTimeMillis()
+  {
+    return m_maxRunTime;
+  }
+
+  public synchronized long getTotalRunTimeMillis()
+  {
+    return m_totalRunTime;
+  }
+
+  public synchronized long getAverageRunTimeMillis()
+  {
+    return m_completedCount > 0L ? m_totalRunTime / m_completedCount : 0L;
+  }
+
+  public synchronized void resetStatistics()
+  {
+    m_completedCount = 0L;
+    m_lastRunTime = 0L;
+    m_maxRunTime = 0L;
+    m_totalRunTime = 0L;
+  }
+
+  private void runJobs()
+  {
+    while (true)
+    {
+      Job job;
+      synchronized (this)
+      {
+        while (m_queue.isEmpty() && !m_shutdown)
+        {
+          try
+          {
+            wait();
+          }
+          catch (InterruptedException e)
+          {
+            // Jobs queued behind a worker that stopped alone might never run, so shut down altogether and let later
+            // execute calls fail loudly instead.
+            Thread.currentThread().interrupt();
+            shutdown();
+          }
+        }
+        if (m_shutdown)
+        {
+          return;
+        }
+        job = m_queue.poll();
+        m_activeCount++;
+      }
+
+      long startTime = SystemClock.uptimeMillis();
+      try
+      {
+        job.runnable.run();
+      }
+      finally
+      {
+        long runTime = SystemClock.uptimeMillis() - startTime;
+        synchronized (this)
+        {
+          m_activeCount--;
+          m_completedCount++;
+          m_lastRunTime = runTime;
+          m_maxRunTime = Math.max(m_maxRunTime, runTime);
+          m_totalRunTime += runTime;
+        }
+      }
+    }
+  }
+
+  private static class Job implements Comparable<Job>
+  {
+    final Runnable runnable;
+    final int priority;
+    final long sequence;
+
+    Job(Runnable runnable, int priority, long sequence)
+    {
+      this.runnable = runnable;
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(@NonNull Job other)
+    {
+      if (priority != other.priority)
+      {
+        return priority < other.priority ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+}
@@ -4,7 +4,7 @@ import android.widget.TextView;
 
 class TimeAxisLabel
 {
-  final long timestamp;
+  long timestamp;
   float offset;
   final TextView view;
 
@@ -4,8 +4,10 @@ import androidx.annotation.NonNull;
 
 import java.text.DateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
 
 public class TimeAxisLabelData
 {
@@ -16,6 +18,21 @@ public class TimeAxisLabelData
 
   private static final int MAX_LABELS = 200;
 
+  private static final LabelCache s_minuteLabels = new LabelCache(false);
+  private static final LabelCache s_hourLabels = new LabelCache(false);
+  private static final LabelCache s_dayLabels = new LabelCache(true);
+  private static final LabelCache s_weekLabels = new LabelCache(true);
+  private static final LabelCache s_monthLabels = new LabelCache(true);
+
+  private static final ThreadLocal<TimeBoundaryIterator> s_boundaries = new ThreadLocal<TimeBoundaryIterator>()
+  {
+    @Override
+    protected TimeBoundaryIterator initialValue()
+    {
+      return new TimeBoundaryIterator();
+    }
+  };
+
   final long timestamp;
   final String label;
 
@@ -30,23 +47,7 @@ public class TimeAxisLabelData
     TimeAxisLabelData[] labelData;
     if (data.length > 0)
     {
-      long timeDifference = data[data.length - 1].timestamp - data[0].timestamp;
-      if (timeDifference / MILLISECONDS_IN_MINUTE < MAX_LABELS)
-      {
-        labelData = labelMinutes(data);
-      }
-      else if (timeDifference / MILLISECONDS_IN_HOUR < MAX_LABELS)
-      {
-        labelData = labelHours(data);
-      }
-      else if (timeDifference / MILLISECONDS_IN_DAY < MAX_LABELS)
-      {
-        labelData = labelDays(data);
-      }
-      else
-      {
-        labelData = labelMonths(data);
-      }
+      labelData = autoLabel(data[0].timestamp, data[data.length - 1].timestamp);
     }
     else
     {
@@ -55,127 +56,136 @@ public class TimeAxisLabelData
     return labelData;
   }
 
-  private static TimeAxisLabelData[] labelMonths(@NonNull GraphData[] data)
+  public static TimeAxisLabelData[] autoLabel(@NonNull GraphDataBuffer data)
   {
-    ArrayList<TimeAxisLabelData> timeAxisLabelData = new ArrayList<>();
-    if (data.length > 0)
+    TimeAxisLabelData[] labelData;
+    if (data.size() > 0)
     {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTimeInMillis(data[0].timestamp);
-      calendar.set(Calendar.DAY_OF_MONTH, calendar.getMinimum(Calendar.DAY_OF_MONTH));
-      calendar.set(Calendar.HOUR_OF_DAY, calendar.getMinimum(Calendar.HOUR_OF_DAY));
-      calendar.set(Calendar.MINUTE, calendar.getMinimum(Calendar.MINUTE));
-      calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
-      calendar.set(Calendar.MILLISECOND, calendar.getMinimum(Calendar.MILLISECOND));
-
-      GraphData lastEntry = data[data.length - 1];
-      while (calendar.getTimeInMillis() < lastEntry.timestamp)
-      {
-        Date date = calendar.getTime();
-        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
-        timeAxisLabelData.add(new TimeAxisLabelData(calendar.getTimeInMillis(), dateFormat.format(date)));
-        calendar.add(Calendar.MONTH, 1);
-      }
+      labelData = autoLabel(data.getFirstTimestamp(), data.getLastTimestamp());
     }
-
-    return timeAxisLabelData.toArray(new TimeAxisLabelData[0]);
+    else
+    {
+      labelData = new TimeAxisLabelData[0];
+    }
+    return labelData;
   }
 
-  public static TimeAxisLabelData[] labelWeeks(@NonNull GraphData[] data)
+  public static TimeAxisLabelData[] autoLabel(long firstTimestamp, long lastTimestamp)
   {
-    ArrayList<TimeAxisLabelData> timeAxisLabelData = new ArrayList<>();
-    if (data.length > 0)
+    TimeAxisLabelData[] labelData;
+    long timeDifference = lastTimestamp - firstTimestamp;
+    if (timeDifference / MILLISECONDS_IN_MINUTE < MAX_LABELS)
     {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTimeInMillis(data[0].timestamp);
-      calendar.set(Calendar.DAY_OF_WEEK, calendar.getMinimum(Calendar.DAY_OF_WEEK));
-      calendar.set(Calendar.HOUR_OF_DAY, calendar.getMinimum(Calendar.HOUR_OF_DAY));
-      calendar.set(Calendar.MINUTE, calendar.getMinimum(Calendar.MINUTE));
-      calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
-      calendar.set(Calendar.MILLISECOND, calendar.getMinimum(Calendar.MILLISECOND));
-
-      GraphData lastEntry = data[data.length - 1];
-      while (calendar.getTimeInMillis() < lastEntry.timestamp)
-      {
-        Date date = calendar.getTime();
-        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
-        timeAxisLabelData.add(new TimeAxisLabelData(calendar.getTimeInMillis(), dateFormat.format(date)));
-        calendar.add(Calendar.WEEK_OF_YEAR, 1);
-      }
+      labelData = labelMinutes(firstTimestamp, lastTimestamp);
     }
-
-    return timeAxisLabelData.toArray(new TimeAxisLabelData[0]);
+    else if (timeDifference / MILLISECONDS_IN_HOUR < MAX_LABELS)
+    {
+      labelData = labelHours(firstTimestamp, lastTimestamp);
+    }
+    else if (timeDifference / MILLISECONDS_IN_DAY < MAX_LABELS)
+    {
+      labelData = labelDays(firstTimestamp, lastTimestamp);
+    }
+    else
+    {
+      labelData = labelMonths(firstTimestamp, lastTimestamp);
+    }
+    return labelData;
   }
 
-  private static TimeAxisLabelData[] labelDays(@NonNull GraphData[] data)
+  // Stepping between boundaries allocates nothing, leaving the labels themselves as the only allocations.
+  private static TimeAxisLabelData[] label(int unit, long firstTimestamp, long lastTimestamp, LabelCache labelCache)
   {
     ArrayList<TimeAxisLabelData> timeAxisLabelData = new ArrayList<>();
-    if (data.length > 0)
+    TimeBoundaryIterator boundaries = s_boundaries.get();
+    boundaries.reset(unit, firstTimestamp, lastTimestamp);
+    for (long timestamp = boundaries.current(); timestamp < lastTimestamp; timestamp = boundaries.next())
     {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTimeInMillis(data[0].timestamp);
-      calendar.set(Calendar.HOUR_OF_DAY, calendar.getMinimum(Calendar.HOUR_OF_DAY));
-      calendar.set(Calendar.MINUTE, calendar.getMinimum(Calendar.MINUTE));
-      calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
-      calendar.set(Calendar.MILLISECOND, calendar.getMinimum(Calendar.MILLISECOND));
-
-      GraphData lastEntry = data[data.length - 1];
-      while (calendar.getTimeInMillis() < lastEntry.timestamp)
-      {
-        Date date = calendar.getTime();
-        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
-        timeAxisLabelData.add(new TimeAxisLabelData(calendar.getTimeInMillis(), dateFormat.format(date)));
-        calendar.add(Calendar.DATE, 1);
-      }
+      timeAxisLabelData.add(new TimeAxisLabelData(timestamp, labelCache.format(timestamp)));
     }
-
     return timeAxisLabelData.toArray(new TimeAxisLabelData[0]);
   }
 
-  private static TimeAxisLabelData[] labelHours(@NonNull GraphData[] data)
+  private static TimeAxisLabelData[] labelMonths(long firstTimestamp, long lastTimestamp)
   {
-    ArrayList<TimeAxisLabelData> timeAxisLabelData = new ArrayList<>();
-    if (data.length > 0)
-    {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTimeInMillis(data[0].timestamp);
-      calendar.set(Calendar.MINUTE, calendar.getMinimum(Calendar.MINUTE));
-      calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
-      calendar.set(Calendar.MILLISECOND, calendar.getMinimum(Calendar.MILLISECOND));
-
-      GraphData lastEntry = data[data.length - 1];
-      while (calendar.getTimeInMillis() < lastEntry.timestamp)
-      {
-        Date date = calendar.getTime();
-        DateFormat dateFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
-        timeAxisLabelData.add(new TimeAxisLabelData(calendar.getTimeInMillis(), dateFormat.format(date)));
-        calendar.add(Calendar.HOUR_OF_DAY, 1);
-      }
-    }
+    return label(TimeBoundaryIterator.UNIT_MONTH, firstTimestamp, lastTimestamp, s_monthLabels);
+  }
 
-    return timeAxisLabelData.toArray(new TimeAxisLabelData[0]);
+  public static TimeAxisLabelData[] labelWeeks(@NonNull GraphData[] data)
+  {
+    return data.length > 0 ? labelWeeks(data[0].timestamp, data[data.length - 1].timestamp) : new TimeAxisLabelData[0];
   }
 
-  private static TimeAxisLabelData[] labelMinutes(@NonNull GraphData[] data)
+  public static TimeAxisLabelData[] labelWeeks(@NonNull GraphDataBuffer data)
   {
-    ArrayList<TimeAxisLabelData> timeAxisLabelData = new ArrayList<>();
-    if (data.length > 0)
+    return data.size() > 0 ? labelWeeks(data.getFirstTimestamp(), data.getLastTimestamp()) : new TimeAxisLabelData[0];
+  }
+
+  private static TimeAxisLabelData[] labelWeeks(long firstTimestamp, long lastTimestamp)
+  {
+    return label(TimeBoundaryIterator.UNIT_WEEK, firstTimestamp, lastTimestamp, s_weekLabels);
+  }
+
+  private static TimeAxisLabelData[] labelDays(long firstTimestamp, long lastTimestamp)
+  {
+    return label(TimeBoundaryIterator.UNIT_DAY, firstTimestamp, lastTimestamp, s_dayLabels);
+  }
+
+  private static TimeAxisLabelData[] labelHours(long firstTimestamp, long lastTimestamp)
+  {
+    return label(TimeBoundaryIterator.UNIT_HOUR, firstTimestamp, lastTimestamp, s_hourLabels);
+  }
+
+  private static TimeAxisLabelData[] labelMinutes(long firstTimestamp, long lastTimestamp)
+  {
+    return label(TimeBoundaryIterator.UNIT_MINUTE, firstTimestamp, lastTimestamp, s_minuteLabels);
+  }
+
+  // Remembers the labels most recently formatted at one granularity, so labels surviving a refresh are not formatted
+  // again. Entries are direct mapped by timestamp into a fixed number of slots, bounding the memory used. The formatter
+  // is created again if the default locale or time zone changes, which also drops the remembered labels.
+  private static final class LabelCache
+  {
+    private static final int SLOT_SHIFT = 8;
+    private static final int SLOT_COUNT = 1 << SLOT_SHIFT;
+
+    private final boolean m_formatDate;
+    private final long[] m_timestamps = new long[SLOT_COUNT];
+    private final String[] m_labels = new String[SLOT_COUNT];
+    private final Date m_date = new Date();
+    private DateFormat m_dateFormat = null;
+    private Locale m_locale = null;
+    private String m_timeZoneId = null;
+
+    LabelCache(boolean formatDate)
     {
-      Calendar calendar = Calendar.getInstance();
-      calendar.setTimeInMillis(data[0].timestamp);
-      calendar.set(Calendar.SECOND, calendar.getMinimum(Calendar.SECOND));
-      calendar.set(Calendar.MILLISECOND, calendar.getMinimum(Calendar.MILLISECOND));
+      m_formatDate = formatDate;
+    }
 
-      GraphData lastEntry = data[data.length - 1];
-      while (calendar.getTimeInMillis() < lastEntry.timestamp)
+    synchronized String format(long timestamp)
+    {
+      Locale locale = Locale.getDefault();
+      TimeZone timeZone = TimeZone.getDefault();
+      if (m_dateFormat == null || !locale.equals(m_locale) || !timeZone.getID().equals(m_timeZoneId))
       {
-        Date date = calendar.getTime();
-        DateFormat dateFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
-        timeAxisLabelData.add(new TimeAxisLabelData(calendar.getTimeInMillis(), dateFormat.format(date)));
-        calendar.add(Calendar.MINUTE, 1);
+        m_dateFormat = m_formatDate ? DateFormat.getDateInstance(DateFormat.SHORT, locale) :
+            DateFormat.getTimeInstance(DateFormat.SHORT, locale);
+        m_dateFormat.setTimeZone(timeZone);
+        m_locale = locale;
+        m_timeZoneId = timeZone.getID();
+        Arrays.fill(m_labels, null);
       }
-    }
 
-    return timeAxisLabelData.toArray(new TimeAxisLabelData[0]);
+      int slot = (int)((timestamp * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - SLOT_SHIFT));
+      String label = m_labels[slot];
+      if (label == null || m_timestamps[slot] != timestamp)
+      {
+        m_date.setTime(timestamp);
+        label = m_dateFormat.format(m_date);
+        m_labels[slot] = label;
+        m_timestamps[slot] = timestamp;
+      }
+      return label;
+    }
   }
 }
@@ -0,0 +1,282 @@
+package com.voxtric.timegraph;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+// Steps through the local minute, hour, day, week or month boundaries of a period using integer arithmetic on epoch
+// milliseconds. The time zone's offset changes over the period are found once when reset, so stepping looks offsets up
+// by binary search and allocates nothing.
+final class TimeBoundaryIterator
+{
+  static final int UNIT_MINUTE = 0;
+  static final int UNIT_HOUR = 1;
+  static final int UNIT_DAY = 2;
+  static final int UNIT_WEEK = 3;
+  static final int UNIT_MONTH = 4;
+
+  private static final long MILLISECONDS_IN_MINUTE = 60000L;
+  private static final long MILLISECONDS_IN_HOUR = MILLISECONDS_IN_MINUTE * 60L;
+  private static final long MILLISECONDS_IN_DAY = MILLISECONDS_IN_HOUR * 24L;
+
+  // Offsets are sampled this far apart when looking for transitions, which never come closer together than this.
+  private static final long TRANSITION_SCAN_STEP = MILLISECONDS_IN_DAY;
+  private static final long TRANSITION_SCAN_MARGIN = MILLISECONDS_IN_DAY * 32L;
+
+  private TimeZone m_timeZone = null;
+  private int m_firstDayOfWeek = Calendar.SUNDAY;
+
+  // The offset in effect from each transition onwards, with the base offset applying before the first.
+  private long m_coveredStart = 0L;
+  private long m_coveredEnd = 0L;
+  private int m_baseOffset = 0;
+  private long[] m_transitionTimes = new long[8];
+  private int[] m_transitionOffsets = new int[8];
+  private int m_transitionCount = 0;
+
+  private int m_unit = UNIT_MINUTE;
+  private long m_current = 0L;
+  private long m_epochDay = 0L;
+  private int m_year = 1970;
+  private int m_month = 1;
+
+  // Positions the iterator on the last boundary at or before the start timestamp. Offsets are precomputed up to the end
+  // timestamp, with steps beyond it falling back to asking the time zone.
+  void reset(int unit, long startTimestamp, long endTimestamp)
+  {
+    TimeZone timeZone = TimeZone.getDefault();
+    if (m_timeZone == null || !m_timeZone.getID().equals(timeZone.getID()))
+    {
+      m_timeZone = timeZone;
+      m_firstDayOfWeek = Calendar.getInstance(timeZone).getFirstDayOfWeek();
+      m_coveredStart = 0L;
+      m_coveredEnd = 0L;
+    }
+    findTransitions(startTimestamp - TRANSITION_SCAN_MARGIN, endTimestamp + TRANSITION_SCAN_MARGIN);
+
+    m_unit = unit;
+    if (unit == UNIT_MINUTE || unit == UNIT_HOUR)
+    {
+      m_current = alignToUnit(startTimestamp);
+    }
+    else
+    {
+      m_epochDay = floorDiv(startTimestamp + getOffset(startTimestamp), MILLISECONDS_IN_DAY);
+      if (unit == UNIT_WEEK)
+      {
+        // Epoch day zero was a Thursday.
+        int dayOfWeek = (int)floorMod(m_epochDay + 4L, 7L) + Calendar.SUNDAY;
+        m_epochDay -= floorMod(dayOfWeek - m_firstDayOfWeek, 7L);
+      }
+      else if (unit == UNIT_MONTH)
+      {
+        setCivilFromDays(m_epochDay);
+        m_epochDay = daysFromCivil(m_year, m_month, 1);
+      }
+      m_current = localToUtc(m_epochDay * MILLISECONDS_IN_DAY);
+    }
+  }
+
+  long current()
+  {
+    return m_current;
+  }
+
+  // Days skipped entirely by a transition move forward onto the day after, so are stepped past rather than repeated.
+  long next()
+  {
+    long previous = m_current;
+    do
+    {
+      step();
+    }
+    while (m_current <= previous);
+    return m_current;
+  }
+
+  private void step()
+  {
+    switch (m_unit)
+    {
+    case UNIT_MINUTE:
+      m_current += MILLISECONDS_IN_MINUTE;
+      break;
+
+    case UNIT_HOUR:
+      // Hours step by elapsed time as Calendar.add does, so an hour repeated when the clocks go back is labelled twice.
+      m_current += MILLISECONDS_IN_HOUR;
+      break;
+
+    case UNIT_DAY:
+      m_epochDay += 1L;
+      m_current = localToUtc(m_epochDay * MILLISECONDS_IN_DAY);
+      break;
+
+    case UNIT_WEEK:
+      m_epochDay += 7L;
+      m_current = localToUtc(m_epochDay * MILLISECONDS_IN_DAY);
+      break;
+
+    default:
+      m_month++;
+      if (m_month > 12)
+      {
+        m_month = 1;
+        m_year++;
+      }
+      m_epochDay = daysFromCivil(m_year, m_month, 1);
+      m_current = localToUtc(m_epochDay * MILLISECONDS_IN_DAY);
+      break;
+    }
+  }
+
+  private long alignToUnit(long timestamp)
+  {
+    long unitMilliseconds = m_unit == UNIT_MINUTE ? MILLISECONDS_IN_MINUTE : MILLISECONDS_IN_HOUR;
+    int offset = getOffset(timestamp);
+    return (floorDiv(timestamp + offset, unitMilliseconds) * unitMilliseconds) - offset;
+  }
+
+  // Transitions are at least a day apart, so a local time can only be read with the offset from a day before or after
+  // it. As with Calendar, a local time that happens twice is read as the later one, and one skipped by a transition is
+  // read with the offset from before it, moving it forward.
+  private long localToUtc(long localTime)
+  {
+    int offsetBefore = getOffset(localTime - MILLISECONDS_IN_DAY);
+    int offsetAfter = getOffset(localTime + MILLISECONDS_IN_DAY);
+    long utc = localTime - offsetAfter;
+    if (getOffset(utc) != offsetAfter)
+    {
+      utc = localTime - offsetBefore;
+    }
+    return utc;
+  }
+
+  private int getOffset(long timestamp)
+  {
+    int offset;
+    if (timestamp < m_coveredStart || timestamp >= m_coveredEnd)
+    {
+      offset = m_timeZone.getOffset(timestamp);
+    }
+    else
+    {
+      int low = 0;
+      int high = m_transitionCount;
+      while (low < high)
+      {
+        int middle = (low + high) >>> 1;
+        if (m_transitionTimes[middle] <= timestamp)
+        {
+          low = middle + 1;
+        }
+        else
+        {
+          high = middle;
+        }
+      }
+      offset = low == 0 ? m_baseOffset : m_transitionOffsets[low - 1];
+    }
+    return offset;
+  }
+
+  // Samples the offset across the period and narrows each change down to the millisecond it happens at. Periods
+  // already covered are not scanned again, and a period overlapping the covered one extends it.
+  private void findTransitions(long start, long end)
+  {
+    if (m_coveredEnd <= m_coveredStart || start < m_coveredStart || end > m_coveredEnd)
+    {
+      if (m_coveredEnd > m_coveredStart && start <= m_coveredEnd && end >= m_coveredStart)
+      {
+        start = Math.min(start, m_coveredStart);
+        end = Math.max(end, m_coveredEnd);
+      }
+      m_transitionCount = 0;
+      m_baseOffset = m_timeZone.getOffset(start);
+
+      long previousTime = start;
+      int previousOffset = m_baseOffset;
+      while (previousTime < end)
+      {
+        long time = Math.min(previousTime + TRANSITION_SCAN_STEP, end);
+        int offset = m_timeZone.getOffset(time);
+        if (offset != previousOffset)
+        {
+          long before = previousTime;
+          long after = time;
+          while (after - before > 1L)
+          {
+            long middle = before + ((after - before) / 2L);
+            if (m_timeZone.getOffset(middle) == previousOffset)
+            {
+              before = middle;
+            }
+            else
+            {
+              after = middle;
+            }
+          }
+          addTransition(after, offset);
+          previousOffset = offset;
+        }
+        previousTime = time;
+      }
+
+      m_coveredStart = start;
+      m_coveredEnd = end;
+    }
+  }
+
+  private void addTransition(long time, int offset)
+  {
+    if (m_transitionCount == m_transitionTimes.length)
+    {
+      long[] transitionTimes = new long[m_transitionCount * 2];
+      int[] transitionOffsets = new int[m_transitionCount * 2];
+      System.arraycopy(m_transitionTimes, 0, transitionTimes, 0, m_transitionCount);
+      System.arraycopy(m_transitionOffsets, 0, transitionOffsets, 0, m_transitionCount);
+      m_transitionTimes = transitionTimes;
+      m_transitionOffsets = transitionOffsets;
+    }
+    m_transitionTimes[m_transitionCount] = time;
+    m_transitionOffsets[m_transitionCount] = offset;
+    m_transitionCount++;
+  }
+
+  // Days since the epoch of a proleptic Gregorian date, and its inverse below.
+  private static long daysFromCivil(int year, int month, int day)
+  {
+    long adjustedYear = month <= 2 ? year - 1 : year;
+    long era = floorDiv(adjustedYear, 400L);
+    long yearOfEra = adjustedYear - (era * 400L);
+    long dayOfYear = (((153L * (month > 2 ? month - 3 : month + 9)) + 2L) / 5L) + day - 1L;
+    long dayOfEra = (yearOfEra * 365L) + (yearOfEra / 4L) - (yearOfEra / 100L) + dayOfYear;
+    return (era * 146097L) + dayOfEra - 719468L;
+  }
+
+  private void setCivilFromDays(long epochDay)
+  {
+    long shiftedDay = epochDay + 719468L;
+    long era = floorDiv(shiftedDay, 146097L);
+    long dayOfEra = shiftedDay - (era * 146097L);
+    long yearOfEra = (dayOfEra - (dayOfEra / 1460L) + (dayOfEra / 36524L) - (dayOfEra / 146096L)) / 365L;
+    long dayOfYear = dayOfEra - ((365L * yearOfEra) + (yearOfEra / 4L) - (yearOfEra / 100L));
+    long shiftedMonth = ((5L * dayOfYear) + 2L) / 153L;
+    m_month = (int)(shiftedMonth < 10L ? shiftedMonth + 3L : shiftedMonth - 9L);
+    m_year = (int)(yearOfEra + (era * 400L) + (m_month <= 2 ? 1L : 0L));
+  }
+
+  private static long floorDiv(long dividend, long divisor)
+  {
+    long quotient = dividend / divisor;
+    if ((dividend % divisor != 0L) && ((dividend < 0L) != (divisor < 0L)))
+    {
+      quotient--;
+    }
+    return quotient;
+  }
+
+  private static long floorMod(long dividend, long divisor)
+  {
+    return dividend - (floorDiv(dividend, divisor) * divisor);
+  }
+}
@@ -6,9 +6,10 @@ import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.PointF;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.LongSparseArray;
 import android.util.TypedValue;
@@ -27,15 +28,21 @@ import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.constraintlayout.widget.ConstraintSet;
 import androidx.core.graphics.drawable.DrawableCompat;
 
+import com.voxtric.timegraph.opengl.BandFillRenderable;
 import com.voxtric.timegraph.opengl.GraphSurface;
+import com.voxtric.timegraph.opengl.GrowableFloatBuffer;
+import com.voxtric.timegraph.opengl.GrowableIntBuffer;
 import com.voxtric.timegraph.opengl.LineRenderable;
 import com.voxtric.timegraph.opengl.LineStripRenderable;
 import com.voxtric.timegraph.opengl.MeshRenderable;
 import com.voxtric.timegraph.opengl.Renderable;
+import com.voxtric.timegraph.opengl.TextRenderable;
+import com.voxtric.timegraph.opengl.TransformableRenderable;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class TimeGraph extends ConstraintLayout
 {
@@ -58,6 +65,7 @@ public class TimeGraph extends ConstraintLayout
   private static final boolean DEFAULT_SHOW_REFRESH_PROGRESS = true;
   private static final @ColorInt int DEFAULT_GRAPH_BACKGROUND_COLOR = Color.parseColor("#E6E6E6");
   private static final @ColorInt int DEFAULT_DATA_LINE_COLOR = Color.BLACK;
+  private static final @ColorInt int DEFAULT_SCRUB_CURSOR_COLOR = Color.DKGRAY;
 
   private static final boolean DEFAULT_ALLOW_SCROLL = true;
   private static final boolean DEFAULT_ALLOW_SCALE = true;
@@ -66,13 +74,22 @@ public class TimeGraph extends ConstraintLayout
   private static final long NEW_DATA_ANIMATION_DURATION = 600L;
   private static final float HALF_FADE_MULTIPLIER = 0.05f;
   private static final float TIME_AXIS_LABEL_WIDTH_MODIFIER = 1.25f;
+  private static final long SCROLL_VELOCITY_RESET_MILLIS = 100L;
+  private static final float SCROLL_VELOCITY_SMOOTHING = 0.3f;
+  private static final long PREFETCH_LOOKAHEAD_MILLIS = 750L;
+  private static final long MAX_LOADED_WINDOWS_BEHIND = 3L;
+  private static final int MIN_APPENDS_BEFORE_REBUILD = 1024;
+  private static final int MAX_POOLED_FETCH_BUFFERS = 2;
+  private static final int MAX_POOLED_TIME_AXIS_LABELS = 32;
 
   @Retention(RetentionPolicy.SOURCE)
   @IntDef({
       DISPLAY_MODE_BACKGROUND,
       DISPLAY_MODE_BACKGROUND_WITH_FADE,
       DISPLAY_MODE_UNDERLINE,
-      DISPLAY_MODE_UNDERLINE_WITH_FADE
+      DISPLAY_MODE_UNDERLINE_WITH_FADE,
+      DISPLAY_MODE_SHADED_UNDERLINE,
+      DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE
   })
   private @interface DisplayMode {}
 
@@ -80,6 +97,10 @@ public class TimeGraph extends ConstraintLayout
   private static final int DISPLAY_MODE_BACKGROUND_WITH_FADE = 1;
   private static final int DISPLAY_MODE_UNDERLINE = 2;
   public static final int DISPLAY_MODE_UNDERLINE_WITH_FADE = 3;
+  // Shaded modes fill under the line with one triangle strip and pick band colors in the fragment shader, so changing the
+  // highlights only updates uniforms. They fall back to the mesh modes beyond BandFillRenderable.MAX_BANDS bands.
+  public static final int DISPLAY_MODE_SHADED_UNDERLINE = 4;
+  public static final int DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE = 5;
 
   private boolean m_showValueAxis = DEFAULT_SHOW_VALUE_AXIS;
   private float m_valueAxisTextSizeSp = DEFAULT_VALUE_AXIS_TEXT_SIZE_SP;
@@ -100,34 +121,65 @@ public class TimeGraph extends ConstraintLayout
   private boolean m_showRefreshProgress = DEFAULT_SHOW_REFRESH_PROGRESS;
   private @ColorInt int m_graphBackgroundColor = DEFAULT_GRAPH_BACKGROUND_COLOR;
   private @ColorInt int m_dataLineColor = DEFAULT_DATA_LINE_COLOR;
+  private @ColorInt int m_scrubCursorColor = DEFAULT_SCRUB_CURSOR_COLOR;
+  private @ColorInt int[] m_seriesLineColors = new int[0];
 
   private boolean m_allowScroll = DEFAULT_ALLOW_SCROLL;
   private boolean m_allowScale = DEFAULT_ALLOW_SCALE;
+  private boolean m_prefetchOnScroll = true;
 
   private long m_startTimestamp = 0L;
   private long m_endTimestamp = 0L;
   private long m_beforeScalingStartTimestamp = Long.MIN_VALUE;
   private long m_beforeScalingEndTimestamp = Long.MAX_VALUE;
-  private GraphDataProvider m_dataProvider = null;
-
+  private AsyncGraphDataProvider m_dataProvider = null;
+  private GraphDataBuffer m_dataBuffer = new GraphDataBuffer();
+  private final GraphDataBuffer m_decimatedDataBuffer = new GraphDataBuffer();
+  private DataDecimator m_dataDecimator = null;
+  private boolean m_useLevelOfDetail = false;
+  private final DataPyramid m_dataPyramid = new DataPyramid();
+  private final GraphDataBuffer m_levelDataBuffer = new GraphDataBuffer();
+  private boolean m_dataPyramidValid = false;
+  private int m_dataPyramidLevel = 0;
+
+  private RefreshScheduler m_refreshScheduler = RefreshScheduler.getDefault();
   private boolean m_refreshing = false;
   private boolean m_newRefreshRequested = false;
+  private CancellationSignal m_fetchCancellationSignal = null;
+  private CancellationSignal m_prefetchCancellationSignal = null;
+  private final ArrayList<GraphDataBuffer> m_fetchBufferPool = new ArrayList<>();
+  private boolean m_fetchedDataPending = false;
+  private GraphDataBuffer m_fetchedData = null;
+  private AsyncGraphDataProvider m_fetchedDataProvider = null;
+  private long m_fetchedTimeDifference = 0L;
+  private boolean m_fetchedDataAnimate = false;
+  private boolean m_dataOutOfDate = false;
   private ProgressBar m_refreshProgressView = null;
   private TextView m_noDataView = null;
   private Boolean m_hasEnoughData = false;
 
   private GraphSurface m_graphSurfaceView = null;
-  private float m_xOffset = 0.0f;
   private float m_xScale = 1.0f;
   private float m_normalisedForcedXCentre = -1.0f;
+  private float m_viewXScale = 1.0f;
+  private float m_viewXOffset = 0.0f;
+
+  private float m_scrollVelocity = 0.0f;
+  private long m_lastScrollUptime = 0L;
+  private boolean m_prefetchBeforeExhausted = false;
+  private boolean m_prefetchAfterExhausted = false;
 
   private LineStripRenderable m_dataLineStrip = null;
-  private MeshRenderable m_rangeHighlightMesh = null;
+  private DataPointIndex m_dataPointIndex = null;
+  private TransformableRenderable m_rangeHighlightMesh = null;
   private LineRenderable m_labelMarkersLine = null;
   private ValueAnimator m_newDataAnimator = null;
 
-  private GraphData m_firstGraphDataEntry = null;
-  private GraphData m_lastGraphDataEntry = null;
+  private long m_firstDataTimestamp = 0L;
+  private long m_lastDataTimestamp = 0L;
+  private long m_dataOriginTimestamp = 0L;
+  private float m_dataTimeDifference = 1.0f;
+  private float m_dataValueDifference = 1.0f;
 
   private TextView m_valueAxisMinView = null;
   private TextView m_valueAxisMaxView = null;
@@ -135,11 +187,36 @@ public class TimeGraph extends ConstraintLayout
 
   private RelativeLayout m_timeAxisLabelsLayoutView = null;
   private final LongSparseArray<TimeAxisLabel> m_timeAxisLabels = new LongSparseArray<>();
+  private final ArrayList<TimeAxisLabel> m_timeAxisLabelPool = new ArrayList<>();
   private Drawable m_timeAxisLabelsBackground = null;
   private long m_timeAxisLabelsAnchorTimestamp = Long.MIN_VALUE;
+  private long m_labelledStartTimestamp = 0L;
+  private long m_labelledEndTimestamp = 0L;
+  // Labels drawn by the graph surface instead of as views, moved by the view transform along with the data.
+  private boolean m_useGlTimeAxisLabels = false;
+  private TextRenderable m_timeAxisText = null;
+  private TimeAxisLabelData[] m_glTimeAxisLabelData = null;
 
   private float[] m_rangeHighlightingValues = null;
   private int[] m_rangeHighlightingColors = null;
+
+  // Scratch space reused by every append, so appending a sample allocates nothing once it has grown.
+  private final long[] m_appendedTimestamp = new long[1];
+  private final float[] m_appendedValue = new float[1];
+  private final GrowableFloatBuffer m_appendCoords = new GrowableFloatBuffer();
+  private final GrowableFloatBuffer m_appendMeshCoords = new GrowableFloatBuffer();
+  private final GrowableIntBuffer m_appendMeshIndices = new GrowableIntBuffer();
+  private final GrowableFloatBuffer m_appendMeshColors = new GrowableFloatBuffer();
+  private final PointF m_appendIntersection = new PointF();
+  private float[] m_appendFadeValues = null;
+  private int[] m_appendFadeColors = null;
+  private float m_appendFadeValueDifference = 0.0f;
+  private float[] m_appendFadeSourceValues = null;
+  private int[] m_appendFadeSourceColors = null;
+  // Appended entries go into the geometry as they are, bypassing decimation and the data pyramid, so the geometry is
+  // rebuilt from the loaded data once they outnumber what it was built with.
+  private int m_builtEntryCount = 0;
+  private int m_appendedEntryCount = 0;
   private @DisplayMode
   int m_rangeHighlightingDisplayMode = DISPLAY_MODE_BACKGROUND;
 
@@ -193,6 +270,7 @@ public class TimeGraph extends ConstraintLayout
     state.putBoolean("m_showRefreshProgress", m_showRefreshProgress);
     state.putInt("m_graphBackgroundColor", m_graphBackgroundColor);
     state.putInt("m_dataLineColor", m_dataLineColor);
+    state.putInt("m_scrubCursorColor", m_scrubCursorColor);
 
     state.putBoolean("m_allowScroll", m_allowScroll);
     state.putBoolean("m_allowScale", m_allowScale);
@@ -241,6 +319,7 @@ public class TimeGraph extends ConstraintLayout
       setShowRefreshProgress(bundle.getBoolean("m_showRefreshProgress"));
       setGraphBackgroundColor(bundle.getInt("m_graphBackgroundColor"));
       setDataLineColor(bundle.getInt("m_dataLineColor"));
+      setScrubCursorColor(bundle.getInt("m_scrubCursorColor"));
 
       setAllowScroll(bundle.getBoolean("m_allowScroll"));
       setAllowScale(bundle.getBoolean("m_allowScale"));
@@ -480,7 +559,11 @@ public class TimeGraph extends ConstraintLayout
   public void setShowTimeAxis(boolean value)
   {
     m_showTimeAxis = value;
-    m_timeAxisLabelsLayoutView.setVisibility(value ? View.VISIBLE : View.GONE);
+    m_timeAxisLabelsLayoutView.setVisibility(value && !m_useGlTimeAxisLabels ? View.VISIBLE : View.GONE);
+    if (m_useGlTimeAxisLabels)
+    {
+      rebuildGlTimeAxisLabels();
+    }
 
     post(new Runnable()
     {
@@ -508,6 +591,14 @@ public class TimeGraph extends ConstraintLayout
     {
       m_timeAxisLabels.valueAt(i).view.setTextSize(TypedValue.COMPLEX_UNIT_SP, textSizeSp);
     }
+    for (TimeAxisLabel label : m_timeAxisLabelPool)
+    {
+      label.view.setTextSize(TypedValue.COMPLEX_UNIT_SP, textSizeSp);
+    }
+    if (m_useGlTimeAxisLabels)
+    {
+      rebuildGlTimeAxisLabels();
+    }
 
     post(new Runnable()
     {
@@ -535,6 +626,14 @@ public class TimeGraph extends ConstraintLayout
     {
       m_timeAxisLabels.valueAt(i).view.setTextColor(color);
     }
+    for (TimeAxisLabel label : m_timeAxisLabelPool)
+    {
+      label.view.setTextColor(color);
+    }
+    if (m_timeAxisText != null)
+    {
+      m_graphSurfaceView.setColor(m_timeAxisText, color);
+    }
   }
 
   public @ColorInt int getTimeAxisTextColor()
@@ -548,8 +647,7 @@ public class TimeGraph extends ConstraintLayout
 
     if (m_labelMarkersLine != null)
     {
-      m_labelMarkersLine.setColor(color);
-      m_graphSurfaceView.requestRender();
+      m_graphSurfaceView.setColor(m_labelMarkersLine, color);
     }
 
     DrawableCompat.setTint(m_timeAxisLabelsBackground, color);
@@ -619,7 +717,7 @@ public class TimeGraph extends ConstraintLayout
   public void setShowRefreshProgress(boolean value)
   {
     m_showRefreshProgress = value;
-    m_refreshProgressView.setVisibility(value && m_refreshing ? View.VISIBLE : View.INVISIBLE);
+    updateRefreshProgress();
   }
 
   public boolean getShowRefreshProgress()
@@ -641,10 +739,13 @@ public class TimeGraph extends ConstraintLayout
   public void setDataLineColor(@ColorInt int color)
   {
     m_dataLineColor = color;
+    if (m_seriesLineColors.length > 0)
+    {
+      m_seriesLineColors[0] = color;
+    }
     if (m_dataLineStrip != null)
     {
-      m_dataLineStrip.setColor(m_dataLineColor);
-      m_graphSurfaceView.requestRender();
+      m_graphSurfaceView.setColor(m_dataLineStrip, m_dataLineColor);
     }
   }
 
@@ -653,6 +754,112 @@ public class TimeGraph extends ConstraintLayout
     return m_dataLineColor;
   }
 
+  // Colors for each series of multi-series data. The first entry is the data line color and series without a color of
+  // their own use it too.
+  public void setDataLineColors(@NonNull @ColorInt int[] colors)
+  {
+    if (colors.length == 0)
+    {
+      throw new IllegalArgumentException("At least one data line color must be provided.");
+    }
+    m_seriesLineColors = colors.clone();
+    m_dataLineColor = colors[0];
+    LineStripRenderable dataLineStrip = m_dataLineStrip;
+    if (dataLineStrip != null)
+    {
+      m_graphSurfaceView.beginTransaction();
+      try
+      {
+        for (int series = 0; series < dataLineStrip.getSeriesCount(); series++)
+        {
+          m_graphSurfaceView.setSeriesColor(dataLineStrip, series, getSeriesLineColor(series));
+        }
+      }
+      finally
+      {
+        m_graphSurfaceView.commitTransaction();
+      }
+    }
+  }
+
+  public @ColorInt int[] getDataLineColors()
+  {
+    return m_seriesLineColors.length > 0 ? m_seriesLineColors.clone() : new int[] { m_dataLineColor };
+  }
+
+  public void setScrubCursorColor(@ColorInt int color)
+  {
+    m_scrubCursorColor = color;
+    m_graphSurfaceView.setScrubCursorColor(color);
+  }
+
+  public @ColorInt int getScrubCursorColor()
+  {
+    return m_scrubCursorColor;
+  }
+
+  private @ColorInt int getSeriesLineColor(int series)
+  {
+    return series > 0 && series < m_seriesLineColors.length ? m_seriesLineColors[series] : m_dataLineColor;
+  }
+
+  public void setDataDecimator(DataDecimator dataDecimator)
+  {
+    m_dataDecimator = dataDecimator;
+  }
+
+  public DataDecimator getDataDecimator()
+  {
+    return m_dataDecimator;
+  }
+
+  public void setUseLevelOfDetail(boolean useLevelOfDetail)
+  {
+    m_useLevelOfDetail = useLevelOfDetail;
+    m_dataPyramidValid = false;
+  }
+
+  public boolean getUseLevelOfDetail()
+  {
+    return m_useLevelOfDetail;
+  }
+
+  // Draws time axis labels along the bottom of the graph from a glyph atlas texture rather than as views below it, so
+  // scrolling and scaling move them without any work on the UI thread.
+  public void setUseGlTimeAxisLabels(boolean useGlTimeAxisLabels)
+  {
+    if (useGlTimeAxisLabels != m_useGlTimeAxisLabels)
+    {
+      m_useGlTimeAxisLabels = useGlTimeAxisLabels;
+      if (useGlTimeAxisLabels)
+      {
+        m_timeAxisLabelsLayoutView.removeAllViews();
+        m_timeAxisLabels.clear();
+        m_timeAxisLabelPool.clear();
+      }
+      else
+      {
+        if (m_timeAxisText != null)
+        {
+          m_graphSurfaceView.removeRenderable(m_timeAxisText);
+          m_timeAxisText = null;
+        }
+        m_glTimeAxisLabelData = null;
+      }
+      setShowTimeAxis(m_showTimeAxis);
+
+      if (m_hasEnoughData)
+      {
+        refresh(false);
+      }
+    }
+  }
+
+  public boolean getUseGlTimeAxisLabels()
+  {
+    return m_useGlTimeAxisLabels;
+  }
+
   public void setAllowScroll(boolean allow)
   {
     m_allowScroll = allow;
@@ -663,6 +870,31 @@ public class TimeGraph extends ConstraintLayout
     return m_allowScroll;
   }
 
+  public void setPrefetchOnScroll(boolean prefetch)
+  {
+    m_prefetchOnScroll = prefetch;
+  }
+
+  public boolean getPrefetchOnScroll()
+  {
+    return m_prefetchOnScroll;
+  }
+
+  public void setRefreshScheduler(@NonNull RefreshScheduler refreshScheduler)
+  {
+    m_refreshScheduler = refreshScheduler;
+  }
+
+  public RefreshScheduler getRefreshScheduler()
+  {
+    return m_refreshScheduler;
+  }
+
+  int getRefreshPriority()
+  {
+    return isShown() ? RefreshScheduler.PRIORITY_VISIBLE : RefreshScheduler.PRIORITY_HIDDEN;
+  }
+
   public void setAllowScale(boolean allow)
   {
     m_allowScale = allow;
@@ -760,10 +992,77 @@ public class TimeGraph extends ConstraintLayout
     constraintSet.applyTo(TimeGraph.this);
   }
 
+  // Only the period within half a window either side of the visible one is labelled, rather than all that is loaded, as
+  // labels beyond that are never seen before finishTransform asks for them again. Providers that can't label by period
+  // are given the loaded data as it is. Must be called on the refresh scheduler, as provider callbacks are.
+  private TimeAxisLabelData[] getLabelsForView(AsyncGraphDataProvider dataProvider, GraphDataBuffer data)
+  {
+    long margin = (m_endTimestamp - m_startTimestamp) / 2L;
+    m_labelledStartTimestamp = m_startTimestamp - margin;
+    m_labelledEndTimestamp = m_endTimestamp + margin;
+
+    TimeAxisLabelData[] labelData = null;
+    if (dataProvider instanceof PeriodLabelProvider && data.size() > 0)
+    {
+      long startTimestamp = Math.max(m_labelledStartTimestamp, data.getFirstTimestamp());
+      long endTimestamp = Math.min(m_labelledEndTimestamp, data.getLastTimestamp());
+      labelData = ((PeriodLabelProvider)dataProvider).getLabelsForPeriod(startTimestamp, endTimestamp);
+    }
+    if (labelData == null)
+    {
+      labelData = dataProvider.getLabelsForData(data);
+    }
+    return labelData;
+  }
+
+  private boolean isViewLabelled()
+  {
+    return m_startTimestamp >= m_labelledStartTimestamp && m_endTimestamp <= m_labelledEndTimestamp;
+  }
+
+  // Labels the view again without rebuilding its geometry. Runs on the refresh scheduler, so the provider is only ever
+  // called from there and the loaded data can't change underneath it.
+  private void relabelView(final AsyncGraphDataProvider dataProvider)
+  {
+    m_refreshScheduler.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (dataProvider == m_dataProvider && !isViewLabelled())
+        {
+          setTimeAxisLabels(getLabelsForView(dataProvider, m_dataBuffer));
+        }
+      }
+    }, getRefreshPriority());
+  }
+
+  // Called on the refresh scheduler, usually within the transaction swapping in the geometry the labels belong to, so
+  // the markers and any GL text arrive in the same frame as it. Only label views are left to update on the UI thread.
   private void setTimeAxisLabels(final TimeAxisLabelData[] timeAxisLabelData)
   {
-    if (timeAxisLabelData != null && timeAxisLabelData.length > 0)
+    if (m_useGlTimeAxisLabels)
+    {
+      setGlTimeAxisLabels(timeAxisLabelData);
+    }
+    else if (timeAxisLabelData != null && timeAxisLabelData.length > 0)
     {
+      float width = m_graphSurfaceView.getWidth();
+      float[] labelMarkerCoords = new float[timeAxisLabelData.length * 4];
+      for (int i = 0; i < timeAxisLabelData.length; i++)
+      {
+        setLabelMarkerCoords(labelMarkerCoords, i, getTimeAxisOffset(timeAxisLabelData[i].timestamp, width), width);
+      }
+      m_graphSurfaceView.beginTransaction();
+      try
+      {
+        replaceLabelMarkers(labelMarkerCoords);
+      }
+      finally
+      {
+        m_graphSurfaceView.commitTransaction();
+      }
+
       post(new Runnable()
       {
         @Override
@@ -771,86 +1070,56 @@ public class TimeGraph extends ConstraintLayout
         {
           final int initialTimeAxisHeight = m_timeAxisLabelsLayoutView.getHeight();
 
-          // Add the new labels and create graph markers.
-          int anchorIndex = -1;
-          float[] labelMarkerCoords = new float[timeAxisLabelData.length * 4];
+          // Match the new labels against the current ones by timestamp. Current labels with no match are rebound to the
+          // new timestamps in place, so only labels whose text changed are touched and no views are created or removed.
+          TimeAxisLabel[] matchedLabels = new TimeAxisLabel[timeAxisLabelData.length];
+          ArrayList<TimeAxisLabel> staleLabels = new ArrayList<>();
+          int currentLabelCount = m_timeAxisLabels.size();
+          int currentIndex = 0;
           for (int i = 0; i < timeAxisLabelData.length; i++)
           {
-            TimeAxisLabel label = m_timeAxisLabels.get(timeAxisLabelData[i].timestamp);
-            if (label == null)
+            long timestamp = timeAxisLabelData[i].timestamp;
+            while (currentIndex < currentLabelCount && m_timeAxisLabels.keyAt(currentIndex) < timestamp)
             {
-              label = new TimeAxisLabel(timeAxisLabelData[i].timestamp, createTextView(getContext(), m_timeAxisTextSizeSp, m_timeAxisTextColor));
-              label.view.setBackground(m_timeAxisLabelsBackground);
-              label.view.setPadding(dpToPx(getContext(), 3), 0, 0, 0);
-              m_timeAxisLabelsLayoutView.addView(label.view);
-              m_timeAxisLabels.append(label.timestamp, label);
+              staleLabels.add(m_timeAxisLabels.valueAt(currentIndex));
+              currentIndex++;
             }
-            else if (label.view.getVisibility() == View.VISIBLE && anchorIndex == -1)
+            if (currentIndex < currentLabelCount && m_timeAxisLabels.keyAt(currentIndex) == timestamp)
             {
-              anchorIndex = i;
+              matchedLabels[i] = m_timeAxisLabels.valueAt(currentIndex);
+              currentIndex++;
             }
-            repositionTimeAxisLabel(label);
-            label.view.setText(timeAxisLabelData[i].label);
-
-            int coordsIndex = i * 4;
-            float markerX = (((label.offset / m_graphSurfaceView.getWidth()) * 2.0f) - 1.0f) + 0.001f;
-            labelMarkerCoords[coordsIndex] = markerX;
-            labelMarkerCoords[coordsIndex + 1] = -1.0f;
-            labelMarkerCoords[coordsIndex + 2] = markerX;
-            labelMarkerCoords[coordsIndex + 3] = -0.9f;
           }
-
-          LineRenderable oldLabelMarkersLine = m_labelMarkersLine;
-          m_labelMarkersLine = m_graphSurfaceView.addLine(1, labelMarkerCoords, m_timeAxisMarkerColor);
-          if (oldLabelMarkersLine != null)
+          for (; currentIndex < currentLabelCount; currentIndex++)
           {
-            m_graphSurfaceView.removeRenderable(oldLabelMarkersLine);
+            staleLabels.add(m_timeAxisLabels.valueAt(currentIndex));
           }
 
-          // Remove the unused labels.
-          if (anchorIndex != -1)
+          m_timeAxisLabels.clear();
+          int anchorIndex = -1;
+          for (int i = 0; i < timeAxisLabelData.length; i++)
           {
-            // Same time scale.
-            int removeAfterIndex = m_timeAxisLabels.indexOfKey(timeAxisLabelData[timeAxisLabelData.length - 1].timestamp);
-            for (int i = m_timeAxisLabels.size() - 1; i > removeAfterIndex; i--)
+            TimeAxisLabel label = matchedLabels[i];
+            if (label == null)
             {
-              m_timeAxisLabelsLayoutView.removeView(m_timeAxisLabels.valueAt(i).view);
-              m_timeAxisLabels.removeAt(i);
+              label = obtainTimeAxisLabel(staleLabels);
+              label.timestamp = timeAxisLabelData[i].timestamp;
             }
-            int removeBeforeIndex = m_timeAxisLabels.indexOfKey(timeAxisLabelData[0].timestamp);
-            for (int i = removeBeforeIndex - 1; i >= 0; i--)
+            else if (label.view.getVisibility() == View.VISIBLE && anchorIndex == -1)
             {
-              m_timeAxisLabelsLayoutView.removeView(m_timeAxisLabels.valueAt(i).view);
-              m_timeAxisLabels.removeAt(i);
+              anchorIndex = i;
             }
-          }
-          else
-          {
-            // Different time scale.
-            int dataIndex = 0;
-            int incorrectTimeAxisLabelCount = m_timeAxisLabels.size();
-            for (int i = 0; i < incorrectTimeAxisLabelCount; i++)
+            m_timeAxisLabels.append(label.timestamp, label);
+            repositionTimeAxisLabel(label);
+            if (!timeAxisLabelData[i].label.contentEquals(label.view.getText()))
             {
-              // Race condition: bail out here to ensure the app doesn't crash.
-              if (dataIndex >= timeAxisLabelData.length)
-              {
-                break;
-              }
-
-              TimeAxisLabel label = m_timeAxisLabels.valueAt(i);
-              if (label.timestamp != timeAxisLabelData[dataIndex].timestamp)
-              {
-                m_timeAxisLabelsLayoutView.removeView(label.view);
-                m_timeAxisLabels.removeAt(i);
-                incorrectTimeAxisLabelCount--;
-                i--;
-              }
-              else
-              {
-                dataIndex++;
-              }
+              label.view.setText(timeAxisLabelData[i].label);
             }
           }
+          for (TimeAxisLabel label : staleLabels)
+          {
+            recycleTimeAxisLabel(label);
+          }
 
           final int finalAnchorIndex = anchorIndex;
           post(new Runnable()
@@ -883,11 +1152,154 @@ public class TimeGraph extends ConstraintLayout
     }
   }
 
-  private void repositionTimeAxisLabel(TimeAxisLabel label)
+  // Reuses a label no longer needed where there is one, then one from the pool, creating a new label only when both
+  // are empty.
+  private TimeAxisLabel obtainTimeAxisLabel(ArrayList<TimeAxisLabel> staleLabels)
+  {
+    TimeAxisLabel label;
+    if (!staleLabels.isEmpty())
+    {
+      label = staleLabels.remove(staleLabels.size() - 1);
+    }
+    else if (!m_timeAxisLabelPool.isEmpty())
+    {
+      label = m_timeAxisLabelPool.remove(m_timeAxisLabelPool.size() - 1);
+      label.view.setVisibility(View.VISIBLE);
+    }
+    else
+    {
+      label = new TimeAxisLabel(createTextView(getContext(), m_timeAxisTextSizeSp, m_timeAxisTextColor));
+      label.view.setBackground(m_timeAxisLabelsBackground);
+      label.view.setPadding(dpToPx(getContext(), 3), 0, 0, 0);
+      m_timeAxisLabelsLayoutView.addView(label.view);
+    }
+    return label;
+  }
+
+  // Pooled labels stay in the layout but are gone from it, so taking them back out needs no view to be added.
+  private void recycleTimeAxisLabel(TimeAxisLabel label)
+  {
+    if (m_timeAxisLabelPool.size() < MAX_POOLED_TIME_AXIS_LABELS)
+    {
+      label.view.setVisibility(View.GONE);
+      m_timeAxisLabelPool.add(label);
+    }
+    else
+    {
+      m_timeAxisLabelsLayoutView.removeView(label.view);
+    }
+  }
+
+  // Markers and label text are anchored in the same space as the data geometry, so the view transform alone keeps them in
+  // place during gestures. Labels overlapping the one before them at the current scale are left out. Called on the
+  // refresh scheduler, as with setTimeAxisLabels.
+  private void setGlTimeAxisLabels(TimeAxisLabelData[] timeAxisLabelData)
+  {
+    if (timeAxisLabelData != null && timeAxisLabelData.length > 0)
+    {
+      m_glTimeAxisLabelData = timeAxisLabelData;
+      float width = m_graphSurfaceView.getWidth();
+      float textSizePx = spToPx(getContext(), m_timeAxisTextSizeSp);
+      float paddingPx = dpToPx(getContext(), 3);
+
+      float[] labelMarkerCoords = new float[timeAxisLabelData.length * 4];
+      float[] textAnchors = new float[timeAxisLabelData.length];
+      String[] texts = new String[timeAxisLabelData.length];
+      int textCount = 0;
+      float lastTextEnd = -Float.MAX_VALUE;
+      for (int i = 0; i < timeAxisLabelData.length; i++)
+      {
+        float offset = getTimeAxisOffset(timeAxisLabelData[i].timestamp, width);
+        setLabelMarkerCoords(labelMarkerCoords, i, offset, width);
+
+        if (m_showTimeAxis && offset >= lastTextEnd)
+        {
+          String text = timeAxisLabelData[i].label;
+          textAnchors[textCount] = labelMarkerCoords[i * 4];
+          texts[textCount] = text;
+          textCount++;
+          lastTextEnd = offset + ((paddingPx + m_graphSurfaceView.measureText(text, textSizePx)) * TIME_AXIS_LABEL_WIDTH_MODIFIER);
+        }
+      }
+
+      TextRenderable oldTimeAxisText = m_timeAxisText;
+      m_graphSurfaceView.beginTransaction();
+      try
+      {
+        replaceLabelMarkers(labelMarkerCoords);
+        m_timeAxisText = null;
+        if (textCount > 0)
+        {
+          m_timeAxisText = m_graphSurfaceView.addText(1, Arrays.copyOf(textAnchors, textCount), Arrays.copyOf(texts, textCount),
+                                                      textSizePx, m_timeAxisTextColor, paddingPx);
+          m_timeAxisText.setXScale(m_viewXScale, 0.0f);
+          m_timeAxisText.setXOffset(m_viewXOffset);
+        }
+        if (oldTimeAxisText != null)
+        {
+          m_graphSurfaceView.removeRenderable(oldTimeAxisText);
+        }
+      }
+      finally
+      {
+        m_graphSurfaceView.commitTransaction();
+      }
+    }
+  }
+
+  // Rebuilds the GL labels from the last label data after a change to how they look, on the refresh scheduler where they
+  // are otherwise built.
+  private void rebuildGlTimeAxisLabels()
+  {
+    m_refreshScheduler.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (m_useGlTimeAxisLabels)
+        {
+          setGlTimeAxisLabels(m_glTimeAxisLabelData);
+        }
+      }
+    }, getRefreshPriority());
+  }
+
+  private float getTimeAxisOffset(long timestamp, float width)
   {
     double difference = (double)(m_endTimestamp - m_startTimestamp);
-    float widthMultiplier = 1.0f - (float)((double)(m_endTimestamp - label.timestamp) / difference);
-    float offset = widthMultiplier * m_graphSurfaceView.getWidth();
+    float widthMultiplier = 1.0f - (float)((double)(m_endTimestamp - timestamp) / difference);
+    return widthMultiplier * width;
+  }
+
+  // Markers are placed in the same space as the data geometry so they keep moving with the data if labels are replaced
+  // mid-gesture.
+  private void setLabelMarkerCoords(float[] labelMarkerCoords, int index, float offset, float width)
+  {
+    int coordsIndex = index * 4;
+    float viewMarkerX = (((offset / width) * 2.0f) - 1.0f) + 0.001f;
+    float markerX = (viewMarkerX - m_viewXOffset) / m_viewXScale;
+    labelMarkerCoords[coordsIndex] = markerX;
+    labelMarkerCoords[coordsIndex + 1] = -1.0f;
+    labelMarkerCoords[coordsIndex + 2] = markerX;
+    labelMarkerCoords[coordsIndex + 3] = -0.9f;
+  }
+
+  // Must be called within a transaction.
+  private void replaceLabelMarkers(float[] labelMarkerCoords)
+  {
+    LineRenderable oldLabelMarkersLine = m_labelMarkersLine;
+    m_labelMarkersLine = m_graphSurfaceView.addLine(1, labelMarkerCoords, m_timeAxisMarkerColor);
+    m_labelMarkersLine.setXScale(m_viewXScale, 0.0f);
+    m_labelMarkersLine.setXOffset(m_viewXOffset);
+    if (oldLabelMarkersLine != null)
+    {
+      m_graphSurfaceView.removeRenderable(oldLabelMarkersLine);
+    }
+  }
+
+  private void repositionTimeAxisLabel(TimeAxisLabel label)
+  {
+    float offset = getTimeAxisOffset(label.timestamp, m_graphSurfaceView.getWidth());
     label.view.animate().translationX(offset).setDuration(0).start();
     label.offset = offset;
   }
@@ -956,11 +1368,20 @@ public class TimeGraph extends ConstraintLayout
       }
     }
 
+    boolean geometryReusable = m_rangeHighlightMesh instanceof BandFillRenderable &&
+        isShadedDisplayMode(displayMode) && colors.length <= BandFillRenderable.MAX_BANDS;
     m_rangeHighlightingValues = values;
     m_rangeHighlightingColors = colors;
     m_rangeHighlightingDisplayMode = displayMode;
 
-    refresh(animate);
+    if (geometryReusable)
+    {
+      updateRangeHighlightBands((BandFillRenderable)m_rangeHighlightMesh, m_dataValueDifference);
+    }
+    else
+    {
+      refresh(animate);
+    }
   }
 
   public void clearRangeHighlights()
@@ -976,6 +1397,16 @@ public class TimeGraph extends ConstraintLayout
   }
 
   public void setVisibleDataPeriod(long startTimestamp, long endTimestamp, @NonNull final GraphDataProvider dataProvider, boolean animate)
+  {
+    setVisibleDataPeriod(startTimestamp, endTimestamp, new GraphDataProviderAdapter(dataProvider), animate);
+  }
+
+  public void setVisibleDataPeriod(long startTimestamp, long endTimestamp, @NonNull final GraphDataBufferProvider dataProvider, boolean animate)
+  {
+    setVisibleDataPeriod(startTimestamp, endTimestamp, new AsyncGraphDataProviderAdapter(dataProvider), animate);
+  }
+
+  public void setVisibleDataPeriod(long startTimestamp, long endTimestamp, @NonNull final AsyncGraphDataProvider dataProvider, boolean animate)
   {
     m_startTimestamp = startTimestamp;
     m_endTimestamp = endTimestamp;
@@ -1004,6 +1435,16 @@ public class TimeGraph extends ConstraintLayout
   }
 
   public void refresh(GraphDataProvider dataProvider, boolean animateNew)
+  {
+    refresh(dataProvider != null ? new GraphDataProviderAdapter(dataProvider) : null, animateNew);
+  }
+
+  public void refresh(GraphDataBufferProvider dataProvider, boolean animateNew)
+  {
+    refresh(dataProvider != null ? new AsyncGraphDataProviderAdapter(dataProvider) : null, animateNew);
+  }
+
+  public void refresh(AsyncGraphDataProvider dataProvider, boolean animateNew)
   {
     m_dataProvider = dataProvider;
     refresh(animateNew);
@@ -1015,7 +1456,7 @@ public class TimeGraph extends ConstraintLayout
     final long timeDifference = m_endTimestamp - m_startTimestamp;
     if (timeDifference > 0L)
     {
-      createDataRepresentations(timeDifference, animateNew);
+      createDataRepresentations(timeDifference, animateNew, true);
     }
     else
     {
@@ -1023,82 +1464,516 @@ public class TimeGraph extends ConstraintLayout
     }
   }
 
-  private void createDataRepresentations(final long timeDifference, final boolean animate)
+  public void appendData(long timestamp, float value)
+  {
+    m_appendedTimestamp[0] = timestamp;
+    m_appendedValue[0] = value;
+    appendData(m_appendedTimestamp, m_appendedValue, 0, 1);
+  }
+
+  public void appendData(@NonNull long[] timestamps, @NonNull float[] values)
+  {
+    if (timestamps.length != values.length)
+    {
+      throw new IllegalArgumentException("The number of appended timestamps must match the number of appended values.");
+    }
+    appendData(timestamps, values, 0, timestamps.length);
+  }
+
+  public void appendData(@NonNull long[] timestamps, @NonNull float[] values, int offset, int count)
   {
-    if (m_refreshing)
+    if (count <= 0)
     {
-      m_newRefreshRequested = true;
+      return;
     }
-    else
+    for (int i = offset + 1; i < offset + count; i++)
     {
-      m_refreshing = true;
-      m_newRefreshRequested = true;
-      post(new Runnable()
+      if (timestamps[i] <= timestamps[i - 1])
       {
-        @Override
-        public void run()
-        {
-          if (m_showRefreshProgress)
-          {
-            m_refreshProgressView.setVisibility(View.VISIBLE);
-          }
-          m_noDataView.setVisibility(View.INVISIBLE);
-        }
-      });
+        throw new IllegalArgumentException("Appended data must be provided in ascending timestamp order.");
+      }
+    }
 
-      AsyncTask.execute(new Runnable()
+    if (canAppendInPlace())
+    {
+      if (timestamps[offset] <= m_lastDataTimestamp)
       {
-        @Override
-        public void run()
-        {
-          float valueDifference = m_valueAxisMax - m_valueAxisMin;
+        throw new IllegalArgumentException("Appended data must be newer than the data already displayed.");
+      }
 
-          GraphData[] data = null;
-          if (m_dataProvider != null)
-          {
-            while (m_newRefreshRequested)
-            {
-              m_newRefreshRequested = false;
-              data = m_dataProvider.getData(TimeGraph.this,
-                                            m_startTimestamp - timeDifference,
-                                            m_endTimestamp + timeDifference,
-                                            m_startTimestamp,
-                                            m_endTimestamp);
-            }
+      int firstNewIndex = m_dataBuffer.size();
+      m_dataBuffer.addAll(timestamps, values, offset, count);
+      m_lastDataTimestamp = m_dataBuffer.getLastTimestamp();
+      m_dataPyramidValid = false;
+      appendDataRepresentations(firstNewIndex);
+    }
+  }
 
-            m_hasEnoughData = data != null && data.length > 1;
-            if (m_hasEnoughData)
-            {
-              m_firstGraphDataEntry = data[0];
-              m_lastGraphDataEntry = data[data.length - 1];
+  // Appends one sample to each series of multi-series data.
+  public void appendData(long timestamp, @NonNull float[] seriesValues)
+  {
+    if (canAppendInPlace())
+    {
+      if (seriesValues.length != m_dataBuffer.getSeriesCount())
+      {
+        throw new IllegalArgumentException("Expected an appended value for each of the " + m_dataBuffer.getSeriesCount() + " series.");
+      }
+      if (timestamp <= m_lastDataTimestamp)
+      {
+        throw new IllegalArgumentException("Appended data must be newer than the data already displayed.");
+      }
+
+      int firstNewIndex = m_dataBuffer.size();
+      m_dataBuffer.add(timestamp, seriesValues);
+      m_lastDataTimestamp = timestamp;
+      m_dataPyramidValid = false;
+      appendDataRepresentations(firstNewIndex);
+    }
+  }
+
+  private boolean canAppendInPlace()
+  {
+    boolean canAppend = false;
+    if (m_refreshing || m_fetchCancellationSignal != null || m_fetchedDataPending)
+    {
+      // The data buffer belongs to the refresh thread until it finishes and an in-flight fetch may not include the
+      // appended data, so fetch it again afterwards.
+      m_newRefreshRequested = true;
+    }
+    else if (!m_hasEnoughData || m_dataLineStrip == null)
+    {
+      refresh(false);
+    }
+    else
+    {
+      canAppend = true;
+    }
+    return canAppend;
+  }
+
+  private void appendDataRepresentations(int firstNewIndex)
+  {
+    m_appendedEntryCount += m_dataBuffer.size() - firstNewIndex;
+    if (needsRebuildAfterAppend())
+    {
+      trimDataBehindView();
+      createDataRepresentations(m_endTimestamp - m_startTimestamp, false, false);
+    }
+    else
+    {
+      appendDataGeometry(firstNewIndex);
+    }
+  }
+
+  private void appendDataGeometry(int firstNewIndex)
+  {
+    m_graphSurfaceView.beginTransaction();
+    try
+    {
+      long[] timestamps = m_dataBuffer.getTimestamps();
+      float[] values = m_dataBuffer.getValues();
+      int dataCount = m_dataBuffer.size();
+
+      m_appendCoords.clear();
+      addLineStripCoords(m_appendCoords, m_dataBuffer, firstNewIndex, dataCount, m_dataTimeDifference, m_dataValueDifference);
+      m_graphSurfaceView.appendToLineStrip(m_dataLineStrip, m_appendCoords);
+      for (int i = firstNewIndex; i < dataCount; i++)
+      {
+        float xCoord = (timestamps[i] - m_dataOriginTimestamp) / m_dataTimeDifference;
+        float yCoord = (values[i] - m_valueAxisMin) / m_dataValueDifference;
+        m_dataPointIndex.add(timestamps[i], values[i], xCoord, yCoord);
+      }
+
+      if (m_rangeHighlightMesh instanceof BandFillRenderable)
+      {
+        m_appendCoords.clear();
+        addBandFillCoords(m_appendCoords, m_dataBuffer, firstNewIndex, dataCount, m_dataTimeDifference, m_dataValueDifference);
+        m_graphSurfaceView.appendToBandFill((BandFillRenderable)m_rangeHighlightMesh, m_appendCoords);
+      }
+      else if (m_rangeHighlightMesh != null &&
+          m_rangeHighlightingValues != null && m_rangeHighlightingColors != null &&
+          m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
+      {
+        float[] rangeHighlightingValues = null;
+        int[] rangeHighlightingColors = null;
+        if (m_rangeHighlightingDisplayMode == DISPLAY_MODE_UNDERLINE_WITH_FADE)
+        {
+          if (m_appendFadeValues == null || m_appendFadeSourceValues != m_rangeHighlightingValues ||
+              m_appendFadeSourceColors != m_rangeHighlightingColors || m_appendFadeValueDifference != m_dataValueDifference)
+          {
+            m_appendFadeValues = modifyRangeHighlightingValuesForFade(m_dataValueDifference);
+            m_appendFadeColors = modifyRangeHighlightingColorsForFade(m_appendFadeValues.length);
+            m_appendFadeSourceValues = m_rangeHighlightingValues;
+            m_appendFadeSourceColors = m_rangeHighlightingColors;
+            m_appendFadeValueDifference = m_dataValueDifference;
+          }
+          rangeHighlightingValues = m_appendFadeValues;
+          rangeHighlightingColors = m_appendFadeColors;
+        }
+
+        m_appendMeshCoords.clear();
+        m_appendMeshIndices.clear();
+        m_appendMeshColors.clear();
+        int indexStart = 0;
+        for (int dataIndex = Math.max(firstNewIndex - 1, 0); dataIndex < dataCount - 1; dataIndex++)
+        {
+          float startXCoord = (timestamps[dataIndex] - m_dataOriginTimestamp) / m_dataTimeDifference;
+          float startYCoord = (values[dataIndex] - m_valueAxisMin) / m_dataValueDifference;
+          float endXCoord = (timestamps[dataIndex + 1] - m_dataOriginTimestamp) / m_dataTimeDifference;
+          float endYCoord = (values[dataIndex + 1] - m_valueAxisMin) / m_dataValueDifference;
+          if (rangeHighlightingValues != null)
+          {
+            indexStart = addRangeHighlightUnderlineWithFadeSegment(startXCoord, startYCoord, endXCoord, endYCoord, m_dataValueDifference,
+                                                                   rangeHighlightingValues, rangeHighlightingColors,
+                                                                   m_appendMeshCoords, m_appendMeshIndices, m_appendMeshColors,
+                                                                   indexStart, m_appendIntersection);
+          }
+          else
+          {
+            indexStart = addRangeHighlightUnderlineSegment(startXCoord, startYCoord, endXCoord, endYCoord, m_dataValueDifference,
+                                                           m_appendMeshCoords, m_appendMeshIndices, m_appendMeshColors,
+                                                           indexStart, m_appendIntersection);
+          }
+        }
+        m_graphSurfaceView.appendToMesh((MeshRenderable)m_rangeHighlightMesh, m_appendMeshCoords, m_appendMeshIndices,
+                                        m_appendMeshColors);
+      }
+    }
+    finally
+    {
+      m_graphSurfaceView.commitTransaction();
+    }
+  }
+
+  // Rebuilding from the loaded data bounds both it and the geometry, which appends otherwise grow forever. It waits for
+  // gestures to finish, as it resets the view transform they are part way through. Data is only ever dropped from
+  // before the view, so a view held still behind the appended data keeps everything appended after it.
+  private boolean needsRebuildAfterAppend()
+  {
+    boolean needsRebuild = false;
+    if (m_dataProvider != null && m_xScale == 1.0f && m_beforeScalingStartTimestamp == Long.MIN_VALUE)
+    {
+      long keepTimeDifference = (m_endTimestamp - m_startTimestamp) * MAX_LOADED_WINDOWS_BEHIND;
+      boolean farBehind = m_dataBuffer.getFirstTimestamp() < m_startTimestamp - (keepTimeDifference * 2L);
+      boolean reduced = m_dataDecimator != null || m_useLevelOfDetail;
+      needsRebuild = farBehind ||
+          (reduced && m_appendedEntryCount > Math.max(m_builtEntryCount, MIN_APPENDS_BEFORE_REBUILD));
+    }
+    return needsRebuild;
+  }
+
+  // Drops data far behind the view as mergePrefetchedData does, leaving what panning back a few windows would show.
+  private void trimDataBehindView()
+  {
+    long keepTimeDifference = (m_endTimestamp - m_startTimestamp) * MAX_LOADED_WINDOWS_BEHIND;
+    int removeCount = m_dataBuffer.lowerBound(m_startTimestamp - keepTimeDifference);
+    if (removeCount > 0 && removeCount < m_dataBuffer.size() - 1)
+    {
+      m_dataBuffer.remove(0, removeCount);
+      m_firstDataTimestamp = m_dataBuffer.getFirstTimestamp();
+      m_dataPyramidValid = false;
+      m_prefetchBeforeExhausted = false;
+    }
+  }
+
+  public void finishTransform()
+  {
+    long timeDifference = m_endTimestamp - m_startTimestamp;
+    long margin = timeDifference / 2L;
+    boolean dataCoversView = m_hasEnoughData && !m_refreshing && !m_dataOutOfDate && timeDifference > 0L &&
+        m_startTimestamp - m_firstDataTimestamp >= margin && m_lastDataTimestamp - m_endTimestamp >= margin;
+    if (dataCoversView && m_xScale == 1.0f && m_beforeScalingStartTimestamp == Long.MIN_VALUE)
+    {
+      // Only panned since the geometry was built. It is positioned entirely by the view transform, so it and the labels
+      // built alongside it stay valid for as long as the loaded data covers the view. Labels only cover half a window
+      // either side though, so are generated again once panned beyond that.
+      m_normalisedForcedXCentre = -1.0f;
+      if (m_dataProvider != null && !isViewLabelled())
+      {
+        relabelView(m_dataProvider);
+      }
+    }
+    else if (m_useLevelOfDetail && dataCoversView)
+    {
+      // Enough data is already loaded around the new period, so rebuild from it without asking the provider again.
+      m_normalisedForcedXCentre = -1.0f;
+      createDataRepresentations(timeDifference, false, false);
+    }
+    else
+    {
+      refresh(false);
+    }
+  }
+
+  private void createDataRepresentations(final long timeDifference, final boolean animate, final boolean fetchData)
+  {
+    if (fetchData)
+    {
+      requestData(timeDifference, animate);
+    }
+    else if (m_refreshing || m_fetchedDataPending)
+    {
+      m_newRefreshRequested = true;
+    }
+    else
+    {
+      buildDataRepresentations(null, m_dataProvider, timeDifference, animate, false);
+    }
+  }
+
+  private void requestData(final long timeDifference, final boolean animate)
+  {
+    cancelDataRequests();
+    m_dataOutOfDate = false;
+    m_newRefreshRequested = false;
+
+    final AsyncGraphDataProvider dataProvider = m_dataProvider;
+    if (dataProvider == null)
+    {
+      onDataFetched(null, null, timeDifference, animate);
+    }
+    else
+    {
+      final CancellationSignal cancellationSignal = new CancellationSignal();
+      final GraphDataBuffer buffer = obtainFetchBuffer();
+      m_fetchCancellationSignal = cancellationSignal;
+      updateRefreshProgress();
+      m_noDataView.setVisibility(View.INVISIBLE);
+
+      dataProvider.getData(this,
+                           buffer,
+                           m_startTimestamp - timeDifference,
+                           m_endTimestamp + timeDifference,
+                           m_startTimestamp,
+                           m_endTimestamp,
+                           cancellationSignal,
+                           new AsyncGraphDataProvider.Callback()
+      {
+        @Override
+        public void onDataLoaded()
+        {
+          post(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              if (m_fetchCancellationSignal == cancellationSignal)
+              {
+                m_fetchCancellationSignal = null;
+                onDataFetched(buffer, dataProvider, timeDifference, animate);
+              }
+              else
+              {
+                releaseFetchBuffer(buffer);
+              }
+            }
+          });
+        }
+
+        @Override
+        public void onCancelled()
+        {
+          releaseFetchBuffer(buffer);
+          post(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              // The provider gave up on a request that was still wanted, so keep showing the existing data.
+              if (m_fetchCancellationSignal == cancellationSignal)
+              {
+                m_fetchCancellationSignal = null;
+                updateRefreshProgress();
+              }
+            }
+          });
+        }
+      });
+    }
+  }
+
+  private void onDataFetched(GraphDataBuffer data, AsyncGraphDataProvider dataProvider, long timeDifference, boolean animate)
+  {
+    discardFetchedData();
+    m_fetchedDataPending = true;
+    m_fetchedData = data;
+    m_fetchedDataProvider = dataProvider;
+    m_fetchedTimeDifference = timeDifference;
+    m_fetchedDataAnimate = animate;
+    if (!m_refreshing)
+    {
+      buildFetchedData();
+    }
+  }
+
+  private void buildFetchedData()
+  {
+    GraphDataBuffer data = m_fetchedData;
+    AsyncGraphDataProvider dataProvider = m_fetchedDataProvider;
+    m_fetchedDataPending = false;
+    m_fetchedData = null;
+    m_fetchedDataProvider = null;
+    buildDataRepresentations(data, dataProvider, m_fetchedTimeDifference, m_fetchedDataAnimate, true);
+  }
+
+  private void discardFetchedData()
+  {
+    if (m_fetchedData != null)
+    {
+      releaseFetchBuffer(m_fetchedData);
+    }
+    m_fetchedDataPending = false;
+    m_fetchedData = null;
+    m_fetchedDataProvider = null;
+  }
+
+  private void cancelDataRequests()
+  {
+    if (m_fetchCancellationSignal != null)
+    {
+      m_fetchCancellationSignal.cancel();
+      m_fetchCancellationSignal = null;
+    }
+    if (m_prefetchCancellationSignal != null)
+    {
+      m_prefetchCancellationSignal.cancel();
+      m_prefetchCancellationSignal = null;
+    }
+    discardFetchedData();
+  }
+
+  private void cancelSupersededDataRequest()
+  {
+    // The viewport has moved on from what is being fetched, so drop it and fetch again once the gesture finishes.
+    if (m_fetchCancellationSignal != null || m_fetchedDataPending)
+    {
+      if (m_fetchCancellationSignal != null)
+      {
+        m_fetchCancellationSignal.cancel();
+        m_fetchCancellationSignal = null;
+      }
+      discardFetchedData();
+      m_dataOutOfDate = true;
+      updateRefreshProgress();
+    }
+  }
+
+  private GraphDataBuffer obtainFetchBuffer()
+  {
+    GraphDataBuffer buffer;
+    synchronized (m_fetchBufferPool)
+    {
+      int pooledCount = m_fetchBufferPool.size();
+      buffer = pooledCount > 0 ? m_fetchBufferPool.remove(pooledCount - 1) : new GraphDataBuffer();
+    }
+    buffer.setSeriesCount(1);
+    buffer.clear();
+    return buffer;
+  }
+
+  private void releaseFetchBuffer(GraphDataBuffer buffer)
+  {
+    synchronized (m_fetchBufferPool)
+    {
+      if (m_fetchBufferPool.size() < MAX_POOLED_FETCH_BUFFERS)
+      {
+        m_fetchBufferPool.add(buffer);
+      }
+    }
+  }
+
+  private void updateRefreshProgress()
+  {
+    boolean busy = m_refreshing || m_fetchCancellationSignal != null || m_fetchedDataPending;
+    m_refreshProgressView.setVisibility(m_showRefreshProgress && busy ? View.VISIBLE : View.INVISIBLE);
+  }
+
+  private void onDataJobFinished()
+  {
+    if (m_fetchedDataPending)
+    {
+      buildFetchedData();
+    }
+    else if (m_newRefreshRequested && m_fetchCancellationSignal == null)
+    {
+      refresh(false);
+    }
+    updateRefreshProgress();
+  }
+
+  private void buildDataRepresentations(final GraphDataBuffer fetchedData, final AsyncGraphDataProvider dataProvider,
+                                        final long timeDifference, final boolean animate, final boolean fetched)
+  {
+    m_refreshing = true;
+    updateRefreshProgress();
+    m_noDataView.setVisibility(View.INVISIBLE);
+
+    m_refreshScheduler.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        float valueDifference = m_valueAxisMax - m_valueAxisMin;
+
+        GraphDataBuffer data = null;
+        if (fetchedData != null)
+        {
+          GraphDataBuffer previousData = m_dataBuffer;
+          m_dataPyramidValid = false;
+          m_dataBuffer = fetchedData;
+          releaseFetchBuffer(previousData);
+          m_prefetchBeforeExhausted = false;
+          m_prefetchAfterExhausted = false;
+          data = fetchedData;
+        }
+        else if (!fetched && dataProvider != null)
+        {
+          data = m_dataBuffer;
+        }
+        m_graphSurfaceView.beginTransaction();
+        try
+        {
+          if (data != null)
+          {
+            m_hasEnoughData = data.size() > 1;
+            if (m_hasEnoughData)
+            {
+              m_firstDataTimestamp = data.getFirstTimestamp();
+              m_lastDataTimestamp = data.getLastTimestamp();
               float floatTimeDifference = (float)timeDifference;
-              if (m_firstGraphDataEntry.timestamp > m_startTimestamp)
+              if (m_firstDataTimestamp > m_startTimestamp)
               {
-                m_startTimestamp = m_firstGraphDataEntry.timestamp;
+                m_startTimestamp = m_firstDataTimestamp;
                 floatTimeDifference = (float)(m_endTimestamp - m_startTimestamp);
               }
-              if (m_lastGraphDataEntry.timestamp < m_endTimestamp)
+              if (m_lastDataTimestamp < m_endTimestamp)
               {
-                m_endTimestamp = m_lastGraphDataEntry.timestamp;
+                m_endTimestamp = m_lastDataTimestamp;
                 floatTimeDifference = (float)(m_endTimestamp - m_startTimestamp);
               }
               if (m_onPeriodChangeListener != null)
               {
                 m_onPeriodChangeListener.onPeriodChanged(TimeGraph.this, m_startTimestamp, m_endTimestamp);
               }
-              setTimeAxisLabels(m_dataProvider.getLabelsForData(data));
+              m_dataOriginTimestamp = m_startTimestamp;
+              m_dataTimeDifference = floatTimeDifference;
+              m_dataValueDifference = valueDifference;
 
+              GraphDataBuffer renderData = decimateData(selectLevelOfDetail(data));
               float startingYScale = animate ? 0.0f : 1.0f;
-              createDataLineStrip(data, floatTimeDifference, valueDifference, startingYScale);
+              createDataLineStrip(renderData, floatTimeDifference, valueDifference, startingYScale);
               if (m_rangeHighlightingValues != null && m_rangeHighlightingColors != null)
               {
-                createHighlightMesh(data, floatTimeDifference, valueDifference, startingYScale);
+                createHighlightMesh(renderData, floatTimeDifference, valueDifference, startingYScale);
               }
 
-              m_xOffset = 0.0f;
               m_xScale = 1.0f;
               m_beforeScalingStartTimestamp = Long.MIN_VALUE;
               m_beforeScalingEndTimestamp = Long.MAX_VALUE;
+              applyViewTransform();
+
+              // Markers are placed relative to the view transform just applied.
+              setTimeAxisLabels(getLabelsForView(dataProvider, data));
             }
             else
             {
@@ -1110,85 +1985,212 @@ public class TimeGraph extends ConstraintLayout
               {
                 m_graphSurfaceView.removeRenderable(m_labelMarkersLine);
               }
+              if (m_timeAxisText != null)
+              {
+                m_graphSurfaceView.removeRenderable(m_timeAxisText);
+              }
               if (m_rangeHighlightMesh != null)
               {
                 m_graphSurfaceView.removeRenderable(m_rangeHighlightMesh);
               }
             }
           }
+        }
+        finally
+        {
+          m_graphSurfaceView.commitTransaction();
+        }
 
-          if (m_onRefreshListener != null)
+        if (m_onRefreshListener != null && fetched)
+        {
+          m_onRefreshListener.onRefresh(TimeGraph.this, m_startTimestamp, m_endTimestamp, toListenerData(dataProvider, data));
+        }
+
+        m_refreshing = false;
+        final boolean dataApplied = data != null && data.size() > 1;
+        post(new Runnable()
+        {
+          @Override
+          public void run()
           {
-            m_onRefreshListener.onRefresh(TimeGraph.this, m_startTimestamp, m_endTimestamp, data);
+            m_noDataView.setVisibility(!dataApplied && m_showNoDataText ? View.VISIBLE : View.INVISIBLE);
+            onDataJobFinished();
           }
+        });
 
-          m_refreshing = false;
-          final boolean dataApplied = data != null && data.length > 1;
+        if (animate)
+        {
           post(new Runnable()
           {
             @Override
             public void run()
             {
-              m_refreshProgressView.setVisibility(View.INVISIBLE);
-              m_noDataView.setVisibility(!dataApplied && m_showNoDataText ? View.VISIBLE : View.INVISIBLE);
-            }
-          });
-
-          if (animate)
-          {
-            post(new Runnable()
-            {
-              @Override
-              public void run()
+              m_newDataAnimator = ValueAnimator.ofFloat(0.0f, 1.0f);
+              m_newDataAnimator.setDuration(NEW_DATA_ANIMATION_DURATION);
+              m_newDataAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener()
               {
-                m_newDataAnimator = ValueAnimator.ofFloat(0.0f, 1.0f);
-                m_newDataAnimator.setDuration(NEW_DATA_ANIMATION_DURATION);
-                m_newDataAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener()
+                @Override
+                public void onAnimationUpdate(ValueAnimator valueAnimator)
                 {
-                  @Override
-                  public void onAnimationUpdate(ValueAnimator valueAnimator)
+                  float animatedValue = (float)valueAnimator.getAnimatedValue();
+                  if (m_dataLineStrip != null)
                   {
-                    float animatedValue = (float)valueAnimator.getAnimatedValue();
-                    if (m_dataLineStrip != null)
-                    {
-                      m_dataLineStrip.setYScale(animatedValue);
-                    }
-                    if (m_rangeHighlightMesh != null)
-                    {
-                      m_rangeHighlightMesh.setYScale(animatedValue);
-                    }
-                    m_graphSurfaceView.requestRender();
+                    m_dataLineStrip.setYScale(animatedValue);
                   }
-                });
-                m_newDataAnimator.start();
-              }
-            });
-          }
+                  if (m_rangeHighlightMesh != null)
+                  {
+                    m_rangeHighlightMesh.setYScale(animatedValue);
+                  }
+                  m_graphSurfaceView.requestRender();
+                }
+              });
+              m_newDataAnimator.start();
+            }
+          });
         }
-      });
+      }
+    }, getRefreshPriority());
+  }
+
+  private static GraphData[] toListenerData(AsyncGraphDataProvider dataProvider, GraphDataBuffer data)
+  {
+    GraphData[] listenerData = null;
+    if (data != null)
+    {
+      GraphDataProviderAdapter legacyDataProvider = null;
+      if (dataProvider instanceof AsyncGraphDataProviderAdapter &&
+          ((AsyncGraphDataProviderAdapter)dataProvider).dataProvider instanceof GraphDataProviderAdapter)
+      {
+        legacyDataProvider = (GraphDataProviderAdapter)((AsyncGraphDataProviderAdapter)dataProvider).dataProvider;
+      }
+      if (legacyDataProvider != null && legacyDataProvider.isLastBuffer(data))
+      {
+        listenerData = legacyDataProvider.getLastData();
+      }
+      else
+      {
+        listenerData = data.toGraphDataArray();
+      }
+    }
+    return listenerData;
+  }
+
+  private GraphDataBuffer selectLevelOfDetail(GraphDataBuffer data)
+  {
+    GraphDataBuffer levelData = data;
+    if (m_useLevelOfDetail && data.getSeriesCount() == 1)
+    {
+      if (!m_dataPyramidValid)
+      {
+        m_dataPyramid.build(data);
+        m_dataPyramidValid = true;
+      }
+      m_dataPyramidLevel = m_dataPyramid.chooseLevel(m_graphSurfaceView.getWidth(), m_endTimestamp - m_startTimestamp);
+      if (m_dataPyramidLevel > 0)
+      {
+        m_dataPyramid.writeLevel(m_dataPyramidLevel, m_levelDataBuffer);
+        levelData = m_levelDataBuffer;
+      }
+    }
+    return levelData;
+  }
+
+  private void swapLevelOfDetail()
+  {
+    m_graphSurfaceView.beginTransaction();
+    try
+    {
+      int level = m_dataPyramid.chooseLevel(m_graphSurfaceView.getWidth(), m_endTimestamp - m_startTimestamp);
+      if (level != m_dataPyramidLevel)
+      {
+        m_dataPyramidLevel = level;
+        GraphDataBuffer levelData = m_dataBuffer;
+        if (level > 0)
+        {
+          m_dataPyramid.writeLevel(level, m_levelDataBuffer);
+          levelData = m_levelDataBuffer;
+        }
+
+        // Geometry keeps the normalisation of the last refresh so the current transforms still apply to it.
+        GraphDataBuffer renderData = decimateData(levelData);
+        createDataLineStrip(renderData, m_dataTimeDifference, m_dataValueDifference, 1.0f);
+        if (m_rangeHighlightingValues != null && m_rangeHighlightingColors != null &&
+            m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
+        {
+          createHighlightMesh(renderData, m_dataTimeDifference, m_dataValueDifference, 1.0f);
+        }
+        applyViewTransform();
+      }
+    }
+    finally
+    {
+      m_graphSurfaceView.commitTransaction();
     }
   }
 
+  private GraphDataBuffer decimateData(GraphDataBuffer data)
+  {
+    GraphDataBuffer renderData = data;
+    DataDecimator dataDecimator = m_dataDecimator;
+    int surfaceWidth = m_graphSurfaceView.getWidth();
+    if (dataDecimator != null && surfaceWidth > 0 && data.getSeriesCount() == 1)
+    {
+      // The loaded data usually spans more than the visible period, so size the column count to the whole span.
+      double visibleTimeDifference = Math.max(m_endTimestamp - m_startTimestamp, 1L);
+      double dataTimeDifference = data.getLastTimestamp() - data.getFirstTimestamp();
+      int columnCount = (int)Math.min(Math.ceil(surfaceWidth * (dataTimeDifference / visibleTimeDifference)), data.size());
+      dataDecimator.decimate(data, m_decimatedDataBuffer, columnCount);
+      renderData = m_decimatedDataBuffer;
+    }
+    return renderData;
+  }
+
   private void clearDataRepresentations()
   {
+    cancelDataRequests();
+    m_dataOutOfDate = false;
+    m_newRefreshRequested = false;
     m_startTimestamp = 0L;
     m_endTimestamp = 0L;
 
     m_hasEnoughData = false;
-    if (m_dataLineStrip != null)
-    {
-      m_graphSurfaceView.removeRenderable(m_dataLineStrip);
-      m_dataLineStrip = null;
-    }
-    if (m_rangeHighlightMesh != null)
+    m_graphSurfaceView.beginTransaction();
+    try
     {
-      m_graphSurfaceView.removeRenderable(m_rangeHighlightMesh);
-      m_rangeHighlightMesh = null;
+      if (m_dataLineStrip != null)
+      {
+        m_graphSurfaceView.removeRenderable(m_dataLineStrip);
+        m_dataLineStrip = null;
+        m_dataPointIndex = null;
+        post(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            m_graphSurfaceView.setClickablePoints(null);
+          }
+        });
+      }
+      if (m_rangeHighlightMesh != null)
+      {
+        m_graphSurfaceView.removeRenderable(m_rangeHighlightMesh);
+        m_rangeHighlightMesh = null;
+      }
+      if (m_labelMarkersLine != null)
+      {
+        m_graphSurfaceView.removeRenderable(m_labelMarkersLine);
+        m_labelMarkersLine = null;
+      }
+      if (m_timeAxisText != null)
+      {
+        m_graphSurfaceView.removeRenderable(m_timeAxisText);
+        m_timeAxisText = null;
+      }
+      m_glTimeAxisLabelData = null;
     }
-    if (m_labelMarkersLine != null)
+    finally
     {
-      m_graphSurfaceView.removeRenderable(m_labelMarkersLine);
-      m_labelMarkersLine = null;
+      m_graphSurfaceView.commitTransaction();
     }
     setTimeAxisLabels(new TimeAxisLabelData[0]);
     post(new Runnable()
@@ -1206,27 +2208,31 @@ public class TimeGraph extends ConstraintLayout
     }
   }
 
-  private void createDataLineStrip(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  private void createDataLineStrip(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
   {
-    final ArrayList<ClickableDataPoint> clickableDataPoints = new ArrayList<>();
-    float[] coords = new float[data.length * Renderable.COORDS_PER_VERTEX];
-    int coordsIndex = 0;
-    for (GraphData datum : data)
+    long[] timestamps = data.getTimestamps();
+    float[] values = data.getValues();
+    int dataCount = data.size();
+    float[] coords = createLineStripCoords(data, 0, dataCount, timeDifference, valueDifference);
+    m_builtEntryCount = dataCount;
+    m_appendedEntryCount = 0;
+    final DataPointIndex dataPointIndex = new DataPointIndex(dataCount);
+    for (int i = 0; i < dataCount; i++)
     {
-      float xCoord = (datum.timestamp - m_startTimestamp) / timeDifference;
-      float yCoord = (datum.value - m_valueAxisMin) / valueDifference;
-      coords[coordsIndex] = (xCoord * 2.0f) - 1.0f;
-      coords[coordsIndex + 1] = (yCoord * 2.0f) - 1.0f;
-      coordsIndex += 2;
+      float xCoord = (timestamps[i] - m_dataOriginTimestamp) / timeDifference;
+      float yCoord = (values[i] - m_valueAxisMin) / valueDifference;
+      dataPointIndex.add(timestamps[i], values[i], xCoord, yCoord);
+    }
+    m_dataPointIndex = dataPointIndex;
 
-      if (datum.timestamp >= m_startTimestamp && datum.timestamp <= m_endTimestamp)
-      {
-        clickableDataPoints.add(new ClickableDataPoint(xCoord, 1.0f - yCoord, datum));
-      }
+    int seriesCount = data.getSeriesCount();
+    int[] seriesColors = new int[seriesCount];
+    for (int series = 0; series < seriesCount; series++)
+    {
+      seriesColors[series] = getSeriesLineColor(series);
     }
     LineStripRenderable oldDataLine = m_dataLineStrip;
-    m_dataLineStrip = m_graphSurfaceView.addLineStrip(1, coords, Color.BLACK);
-    m_dataLineStrip.setColor(m_dataLineColor);
+    m_dataLineStrip = m_graphSurfaceView.addLineStrip(1, coords, seriesCount, seriesColors);
     m_dataLineStrip.setYScale(startingYScale);
     if (oldDataLine != null)
     {
@@ -1238,12 +2244,51 @@ public class TimeGraph extends ConstraintLayout
       @Override
       public void run()
       {
-        m_graphSurfaceView.setClickablePoints(clickableDataPoints);
+        m_graphSurfaceView.setClickablePoints(dataPointIndex);
       }
     });
   }
 
-  private void createHighlightMesh(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  // Interleaves each entry's x coordinate with the y coordinate of every series.
+  private float[] createLineStripCoords(GraphDataBuffer data, int start, int end, float timeDifference, float valueDifference)
+  {
+    long[] timestamps = data.getTimestamps();
+    int seriesCount = data.getSeriesCount();
+    int floatsPerVertex = seriesCount + 1;
+    float[] coords = new float[(end - start) * floatsPerVertex];
+    for (int i = start; i < end; i++)
+    {
+      int coordsIndex = (i - start) * floatsPerVertex;
+      float xCoord = (timestamps[i] - m_dataOriginTimestamp) / timeDifference;
+      coords[coordsIndex] = (xCoord * 2.0f) - 1.0f;
+      for (int series = 0; series < seriesCount; series++)
+      {
+        float yCoord = (data.getValues(series)[i] - m_valueAxisMin) / valueDifference;
+        coords[coordsIndex + series + 1] = (yCoord * 2.0f) - 1.0f;
+      }
+    }
+    return coords;
+  }
+
+  // As createLineStripCoords, but adding to a builder so appends can reuse the same memory.
+  private void addLineStripCoords(GrowableFloatBuffer coords, GraphDataBuffer data, int start, int end, float timeDifference,
+                                  float valueDifference)
+  {
+    long[] timestamps = data.getTimestamps();
+    int seriesCount = data.getSeriesCount();
+    for (int i = start; i < end; i++)
+    {
+      float xCoord = (timestamps[i] - m_dataOriginTimestamp) / timeDifference;
+      coords.add((xCoord * 2.0f) - 1.0f);
+      for (int series = 0; series < seriesCount; series++)
+      {
+        float yCoord = (data.getValues(series)[i] - m_valueAxisMin) / valueDifference;
+        coords.add((yCoord * 2.0f) - 1.0f);
+      }
+    }
+  }
+
+  private void createHighlightMesh(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
   {
     switch (m_rangeHighlightingDisplayMode)
     {
@@ -1259,411 +2304,357 @@ public class TimeGraph extends ConstraintLayout
     case DISPLAY_MODE_UNDERLINE_WITH_FADE:
       createRangeHighlightMeshUnderlineWithFade(data, timeDifference, valueDifference, startingYScale);
       break;
+    case DISPLAY_MODE_SHADED_UNDERLINE:
+      if (m_rangeHighlightingColors.length <= BandFillRenderable.MAX_BANDS)
+      {
+        createRangeHighlightBandFill(data, timeDifference, valueDifference, startingYScale);
+      }
+      else
+      {
+        createRangeHighlightMeshUnderline(data, timeDifference, valueDifference, startingYScale);
+      }
+      break;
+    case DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE:
+      if (m_rangeHighlightingColors.length <= BandFillRenderable.MAX_BANDS)
+      {
+        createRangeHighlightBandFill(data, timeDifference, valueDifference, startingYScale);
+      }
+      else
+      {
+        createRangeHighlightMeshUnderlineWithFade(data, timeDifference, valueDifference, startingYScale);
+      }
+      break;
     default:
       throw new IllegalStateException("Unknown range highlighting display mode value.");
     }
   }
 
-  private void createRangeHighlightMeshBackground(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  private void createRangeHighlightMeshBackground(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
   {
-    float[] coordArray = new float[m_rangeHighlightingColors.length * 4 * Renderable.COORDS_PER_VERTEX];
-    short[] indexArray = new short[m_rangeHighlightingColors.length * 6];
-    float[] colorArray = new float[m_rangeHighlightingColors.length * 4 * Renderable.COLORS_PER_VERTEX];
+    GrowableFloatBuffer coords = new GrowableFloatBuffer();
+    GrowableIntBuffer indices = new GrowableIntBuffer();
+    GrowableFloatBuffer colors = new GrowableFloatBuffer();
 
-    int coordStartIndex = 0;
-    int indexStartIndex = 0;
-    int colorStartIndex = 0;
-    short indexStart = 0;
+    int indexStart = 0;
     for (int i = 0; i < m_rangeHighlightingColors.length; i++)
     {
       float normalisedRangeStart = (m_rangeHighlightingValues[i] - m_valueAxisMin) / valueDifference;
       float normalisedRangeEnd = (m_rangeHighlightingValues[i + 1] - m_valueAxisMin) / valueDifference;
-      coordArray[coordStartIndex] = -1.0f;
-      coordArray[coordStartIndex + 1] = (normalisedRangeStart * 2.0f) - 1.0f;
-      coordArray[coordStartIndex + 2] = -1.0f;
-      coordArray[coordStartIndex + 3] = (normalisedRangeEnd * 2.0f) - 1.0f;
-      coordArray[coordStartIndex + 4] = 1.0f;
-      coordArray[coordStartIndex + 5] = (normalisedRangeEnd * 2.0f) - 1.0f;
-      coordArray[coordStartIndex + 6] = 1.0f;
-      coordArray[coordStartIndex + 7] = (normalisedRangeStart * 2.0f) - 1.0f;
-      coordStartIndex += 8;
-
-      indexArray[indexStartIndex] = indexStart;
-      indexArray[indexStartIndex + 1] = (short)(indexStart + 1);
-      indexArray[indexStartIndex + 2] = (short)(indexStart + 2);
-      indexArray[indexStartIndex + 3] = indexStart;
-      indexArray[indexStartIndex + 4] = (short)(indexStart + 2);
-      indexArray[indexStartIndex + 5] = (short)(indexStart + 3);
-      indexStartIndex += 6;
+      addCoord(coords, 0.0f, normalisedRangeStart);
+      addCoord(coords, 0.0f, normalisedRangeEnd);
+      addCoord(coords, 1.0f, normalisedRangeEnd);
+      addCoord(coords, 1.0f, normalisedRangeStart);
+
+      indices.add(indexStart, indexStart + 1, indexStart + 2);
+      indices.add(indexStart, indexStart + 2, indexStart + 3);
 
       for (int j = 0; j < 4; j++)
       {
-        colorArray[colorStartIndex] = Color.red(m_rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 1] = Color.green(m_rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 2] = Color.blue(m_rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 3] = 1.0f;
-        colorStartIndex += 4;
+        addColor(colors, m_rangeHighlightingColors[i]);
       }
 
       indexStart += 4;
     }
 
-    replaceMesh(startingYScale, coordArray, indexArray, colorArray);
+    replaceMesh(startingYScale, coords, indices, colors);
   }
 
-  private void createRangeHighlightMeshBackgroundWithFade(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  private void createRangeHighlightMeshBackgroundWithFade(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
   {
     float[] rangeHighlightingValues = modifyRangeHighlightingValuesForFade(valueDifference);
     int[] rangeHighlightingColors = modifyRangeHighlightingColorsForFade(rangeHighlightingValues.length);
 
-    float[] coordArray = new float[rangeHighlightingValues.length * 2 * Renderable.COORDS_PER_VERTEX];
-    short[] indexArray = new short[(rangeHighlightingValues.length - 1) * 6];
-    float[] colorArray = new float[rangeHighlightingValues.length * 2 * Renderable.COLORS_PER_VERTEX];
+    GrowableFloatBuffer coords = new GrowableFloatBuffer();
+    GrowableIntBuffer indices = new GrowableIntBuffer();
+    GrowableFloatBuffer colors = new GrowableFloatBuffer();
 
     float firstNormalisedRangeValue = (rangeHighlightingValues[0] - m_valueAxisMin) / valueDifference;
-    coordArray[0] = -1.0f;
-    coordArray[1] = (firstNormalisedRangeValue * 2.0f) - 1.0f;
-    coordArray[2] = 1.0f;
-    coordArray[3] = (firstNormalisedRangeValue * 2.0f) - 1.0f;
+    addCoord(coords, 0.0f, firstNormalisedRangeValue);
+    addCoord(coords, 1.0f, firstNormalisedRangeValue);
     for (int i = 0; i < 2; i++)
     {
-      colorArray[(i * 4)] = Color.red(rangeHighlightingColors[0]) / 255.0f;
-      colorArray[(i * 4) + 1] = Color.green(rangeHighlightingColors[0]) / 255.0f;
-      colorArray[(i * 4) + 2] = Color.blue(rangeHighlightingColors[0]) / 255.0f;
-      colorArray[(i * 4) + 3] = 1.0f;
+      addColor(colors, rangeHighlightingColors[0]);
     }
-    int coordStartIndex = 4;
-    int indexStartIndex = 0;
-    int colorStartIndex = 8;
 
-    short indexStart = 0;
+    int indexStart = 0;
     for (int i = 1; i < rangeHighlightingColors.length; i++)
     {
       float normalisedRangeEnd = (rangeHighlightingValues[i] - m_valueAxisMin) / valueDifference;
-      coordArray[coordStartIndex] = -1.0f;
-      coordArray[coordStartIndex + 1] = (normalisedRangeEnd * 2.0f) - 1.0f;
-      coordArray[coordStartIndex + 2] = 1.0f;
-      coordArray[coordStartIndex + 3] = (normalisedRangeEnd * 2.0f) - 1.0f;
-      coordStartIndex += 4;
-
-      indexArray[indexStartIndex] = indexStart;
-      indexArray[indexStartIndex + 1] = (short)(indexStart + 1);
-      indexArray[indexStartIndex + 2] = (short)(indexStart + 3);
-      indexArray[indexStartIndex + 3] = indexStart;
-      indexArray[indexStartIndex + 4] = (short)(indexStart + 3);
-      indexArray[indexStartIndex + 5] = (short)(indexStart + 2);
-      indexStartIndex += 6;
+      addCoord(coords, 0.0f, normalisedRangeEnd);
+      addCoord(coords, 1.0f, normalisedRangeEnd);
+
+      indices.add(indexStart, indexStart + 1, indexStart + 3);
+      indices.add(indexStart, indexStart + 3, indexStart + 2);
+
+      for (int j = 0; j < 2; j++)
+      {
+        addColor(colors, rangeHighlightingColors[i]);
+      }
+
+      indexStart += 2;
+    }
+
+    replaceMesh(startingYScale, coords, indices, colors);
+  }
 
-      for (int j = 0; j < 2; j++)
-      {
-        colorArray[colorStartIndex] = Color.red(rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 1] = Color.green(rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 2] = Color.blue(rangeHighlightingColors[i]) / 255.0f;
-        colorArray[colorStartIndex + 3] = 1.0f;
-        colorStartIndex += 4;
-      }
+  private void createRangeHighlightMeshUnderline(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
+  {
+    GrowableFloatBuffer coords = new GrowableFloatBuffer();
+    GrowableIntBuffer indices = new GrowableIntBuffer();
+    GrowableFloatBuffer colors = new GrowableFloatBuffer();
+    PointF intersection = new PointF();
+    int indexStart = 0;
 
-      indexStart += 2;
+    long[] timestamps = data.getTimestamps();
+    float[] values = data.getValues();
+    int dataCount = data.size();
+    for (int dataIndex = 0; dataIndex < dataCount - 1; dataIndex++)
+    {
+      float startXCoord = (timestamps[dataIndex] - m_dataOriginTimestamp) / timeDifference;
+      float startYCoord = (values[dataIndex] - m_valueAxisMin) / valueDifference;
+      float endXCoord = (timestamps[dataIndex + 1] - m_dataOriginTimestamp) / timeDifference;
+      float endYCoord = (values[dataIndex + 1] - m_valueAxisMin) / valueDifference;
+      indexStart = addRangeHighlightUnderlineSegment(startXCoord, startYCoord, endXCoord, endYCoord, valueDifference,
+                                                     coords, indices, colors, indexStart, intersection);
     }
 
-    replaceMesh(startingYScale, coordArray, indexArray, colorArray);
+    replaceMesh(startingYScale, coords, indices, colors);
   }
 
-  private void createRangeHighlightMeshUnderline(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  private int addRangeHighlightUnderlineSegment(float startXCoord, float startYCoord, float endXCoord, float endYCoord, float valueDifference,
+                                                  GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors, int indexStart,
+                                                  PointF intersection)
   {
-    ArrayList<Float> coords = new ArrayList<>();
-    ArrayList<Short> indices = new ArrayList<>();
-    ArrayList<Float> colors = new ArrayList<>();
-    short indexStart = 0;
+    if (endYCoord < startYCoord)
+    {
+      float tempXCoord = startXCoord;
+      float tempYCoord = startYCoord;
+      startXCoord = endXCoord;
+      startYCoord = endYCoord;
+      endXCoord = tempXCoord;
+      endYCoord = tempYCoord;
+    }
 
-    for (int dataIndex = 0; dataIndex < data.length - 1; dataIndex++)
+    int indexReached = 1;
+    boolean finish = false;
+    for (; indexReached < m_rangeHighlightingValues.length && !finish; indexReached++)
     {
-      GraphData start = data[dataIndex];
-      float startXCoord = (start.timestamp - m_startTimestamp) / timeDifference;
-      float startYCoord = (start.value - m_valueAxisMin) / valueDifference;
-      GraphData end = data[dataIndex + 1];
-      float endXCoord = (end.timestamp - m_startTimestamp) / timeDifference;
-      float endYCoord = (end.value - m_valueAxisMin) / valueDifference;
-      if (endYCoord < startYCoord)
+      float normalisedRangeStart = (m_rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
+      float normalisedRangeEnd = (m_rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
+      if (normalisedRangeEnd > startYCoord)
       {
-        float tempXCoord = startXCoord;
-        float tempYCoord = startYCoord;
-        startXCoord = endXCoord;
-        startYCoord = endYCoord;
-        endXCoord = tempXCoord;
-        endYCoord = tempYCoord;
+        normalisedRangeEnd = startYCoord;
+        finish = true;
       }
 
-      int indexReached = 1;
-      boolean finish = false;
-      for (; indexReached < m_rangeHighlightingValues.length && !finish; indexReached++)
+      // Under quad
+      addCoord(coords, startXCoord, normalisedRangeStart);
+      addCoord(coords, endXCoord, normalisedRangeStart);
+      addCoord(coords, endXCoord, normalisedRangeEnd);
+      addCoord(coords, startXCoord, normalisedRangeEnd);
+
+      indices.add(indexStart, indexStart + 1, indexStart + 2);
+      indices.add(indexStart, indexStart + 3, indexStart + 2);
+      indexStart += 4;
+
+      float r = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+      float g = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+      float b = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+      for (int i = 0; i < 4; i++)
       {
-        float normalisedRangeStart = (m_rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
-        float normalisedRangeEnd = (m_rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
-        if (normalisedRangeEnd > startYCoord)
-        {
-          normalisedRangeEnd = startYCoord;
-          finish = true;
-        }
+        colors.add(r, g, b, 1.0f);
+      }
+    }
 
-        // Under quad
-        coords.add(startXCoord);
-        coords.add(normalisedRangeStart);
-        coords.add(endXCoord);
-        coords.add(normalisedRangeStart);
-        coords.add(endXCoord);
-        coords.add(normalisedRangeEnd);
-        coords.add(startXCoord);
-        coords.add(normalisedRangeEnd);
-
-        indices.add(indexStart);
-        indices.add((short)(indexStart + 1));
-        indices.add((short)(indexStart + 2));
-        indices.add(indexStart);
-        indices.add((short)(indexStart + 3));
-        indices.add((short)(indexStart + 2));
+    indexReached--;
+    float lastX = startXCoord;
+    float lastY = startYCoord;
+    for (; indexReached < m_rangeHighlightingValues.length; indexReached++)
+    {
+      float normalisedRangeStart = (m_rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
+      float normalisedRangeEnd = (m_rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
+      if (getRangeIntersection(startXCoord, startYCoord, endXCoord, endYCoord, normalisedRangeEnd, intersection))
+      {
+        // Intersect quad.
+        addCoord(coords, lastX, lastY);
+        addCoord(coords, endXCoord, lastY);
+        addCoord(coords, endXCoord, intersection.y);
+        addCoord(coords, intersection.x, intersection.y);
+
+        indices.add(indexStart, indexStart + 1, indexStart + 2);
+        indices.add(indexStart, indexStart + 3, indexStart + 2);
         indexStart += 4;
 
-        float r = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-        float g = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-        float b = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+        float topR = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+        float topG = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+        float topB = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
         for (int i = 0; i < 4; i++)
         {
-          colors.add(r);
-          colors.add(g);
-          colors.add(b);
-          colors.add(1.0f);
+          colors.add(topR, topG, topB, 1.0f);
         }
-      }
 
-      indexReached--;
-      float lastX = startXCoord;
-      float lastY = startYCoord;
-      for (; indexReached < m_rangeHighlightingValues.length; indexReached++)
+        lastX = intersection.x;
+        lastY = intersection.y;
+      }
+      else
       {
-        float normalisedRangeStart = (m_rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
-        float normalisedRangeEnd = (m_rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
-        PointF intersection = new PointF();
-        if (getRangeIntersection(startXCoord, startYCoord, endXCoord, endYCoord, normalisedRangeEnd, intersection))
-        {
-          // Intersect quad.
-          coords.add(lastX);
-          coords.add(lastY);
-          coords.add(endXCoord);
-          coords.add(lastY);
-          coords.add(endXCoord);
-          coords.add(intersection.y);
-          coords.add(intersection.x);
-          coords.add(intersection.y);
-
-          indices.add(indexStart);
-          indices.add((short)(indexStart + 1));
-          indices.add((short)(indexStart + 2));
-          indices.add(indexStart);
-          indices.add((short)(indexStart + 3));
-          indices.add((short)(indexStart + 2));
-          indexStart += 4;
-
-          float topR = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-          float topG = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-          float topB = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-          for (int i = 0; i < 4; i++)
-          {
-            colors.add(topR);
-            colors.add(topG);
-            colors.add(topB);
-            colors.add(1.0f);
-          }
-
-          lastX = intersection.x;
-          lastY = intersection.y;
-        }
-        else
-        {
-          break;
-        }
+        break;
       }
+    }
 
-      // Peak tri.
-      coords.add(lastX);
-      coords.add(lastY);
-      coords.add(endXCoord);
-      coords.add(lastY);
-      coords.add(endXCoord);
-      coords.add(endYCoord);
+    // Peak tri.
+    addCoord(coords, lastX, lastY);
+    addCoord(coords, endXCoord, lastY);
+    addCoord(coords, endXCoord, endYCoord);
 
-      indices.add(indexStart);
-      indices.add((short)(indexStart + 1));
-      indices.add((short)(indexStart + 2));
-      indexStart += 3;
+    indices.add(indexStart, indexStart + 1, indexStart + 2);
+    indexStart += 3;
 
-      float r = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-      float g = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-      float b = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
-      for (int i = 0; i < 3; i++)
-      {
-        colors.add(r);
-        colors.add(g);
-        colors.add(b);
-        colors.add(1.0f);
-      }
+    float r = Color.red(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    float g = Color.green(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    float b = Color.blue(m_rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    for (int i = 0; i < 3; i++)
+    {
+      colors.add(r, g, b, 1.0f);
     }
 
-    createVariableSizedMesh(startingYScale, coords, indices, colors);
+    return indexStart;
   }
 
-  private void createRangeHighlightMeshUnderlineWithFade(GraphData[] data, float timeDifference, float valueDifference, float startingYScale)
+  private void createRangeHighlightMeshUnderlineWithFade(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
   {
     float[] rangeHighlightingValues = modifyRangeHighlightingValuesForFade(valueDifference);
     int[] rangeHighlightingColors = modifyRangeHighlightingColorsForFade(rangeHighlightingValues.length);
-    ArrayList<Float> coords = new ArrayList<>();
-    ArrayList<Short> indices = new ArrayList<>();
-    ArrayList<Float> colors = new ArrayList<>();
-    short indexStart = 0;
-
-    for (int dataIndex = 0; dataIndex < data.length - 1; dataIndex++)
-    {
-      GraphData start = data[dataIndex];
-      float startXCoord = (start.timestamp - m_startTimestamp) / timeDifference;
-      float startYCoord = (start.value - m_valueAxisMin) / valueDifference;
-      GraphData end = data[dataIndex + 1];
-      float endXCoord = (end.timestamp - m_startTimestamp) / timeDifference;
-      float endYCoord = (end.value - m_valueAxisMin) / valueDifference;
-      if (endYCoord < startYCoord)
-      {
-        float tempXCoord = startXCoord;
-        float tempYCoord = startYCoord;
-        startXCoord = endXCoord;
-        startYCoord = endYCoord;
-        endXCoord = tempXCoord;
-        endYCoord = tempYCoord;
-      }
-
-      int indexReached = 1;
-      boolean finish = false;
-
-      float firstNormalisedRangeValue = (rangeHighlightingValues[0] - m_valueAxisMin) / valueDifference;
-      coords.add(endXCoord);
-      coords.add(firstNormalisedRangeValue);
-      coords.add(startXCoord);
-      coords.add(firstNormalisedRangeValue);
-      float firstR = Color.red(rangeHighlightingColors[0]) / 255.0f;
-      float firstG = Color.green(rangeHighlightingColors[0]) / 255.0f;
-      float firstB = Color.blue(rangeHighlightingColors[0]) / 255.0f;
-      for (int j = 0; j < 2; j++)
-      {
-        colors.add(firstR);
-        colors.add(firstB);
-        colors.add(firstG);
-        colors.add(1.0f);
-      }
+    GrowableFloatBuffer coords = new GrowableFloatBuffer();
+    GrowableIntBuffer indices = new GrowableIntBuffer();
+    GrowableFloatBuffer colors = new GrowableFloatBuffer();
+    PointF intersection = new PointF();
+    int indexStart = 0;
+
+    long[] timestamps = data.getTimestamps();
+    float[] values = data.getValues();
+    int dataCount = data.size();
+    for (int dataIndex = 0; dataIndex < dataCount - 1; dataIndex++)
+    {
+      float startXCoord = (timestamps[dataIndex] - m_dataOriginTimestamp) / timeDifference;
+      float startYCoord = (values[dataIndex] - m_valueAxisMin) / valueDifference;
+      float endXCoord = (timestamps[dataIndex + 1] - m_dataOriginTimestamp) / timeDifference;
+      float endYCoord = (values[dataIndex + 1] - m_valueAxisMin) / valueDifference;
+      indexStart = addRangeHighlightUnderlineWithFadeSegment(startXCoord, startYCoord, endXCoord, endYCoord, valueDifference,
+                                                             rangeHighlightingValues, rangeHighlightingColors,
+                                                             coords, indices, colors, indexStart, intersection);
+    }
 
-      for (; indexReached < rangeHighlightingValues.length && !finish; indexReached++)
-      {
-        float colorInterpolation = 0.0f;
-        float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
-        float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
-        if (normalisedRangeEnd > startYCoord)
-        {
-          colorInterpolation = (normalisedRangeEnd - startYCoord) / (normalisedRangeEnd - normalisedRangeStart);
-          normalisedRangeEnd = startYCoord;
-          finish = true;
-        }
+    replaceMesh(startingYScale, coords, indices, colors);
+  }
 
-        // Under quad
-        coords.add(endXCoord);
-        coords.add(normalisedRangeEnd);
-        coords.add(startXCoord);
-        coords.add(normalisedRangeEnd);
-
-        indices.add(indexStart);
-        indices.add((short)(indexStart + 1));
-        indices.add((short)(indexStart + 3));
-        indices.add(indexStart);
-        indices.add((short)(indexStart + 2));
-        indices.add((short)(indexStart + 3));
-        indexStart += 2;
+  private int addRangeHighlightUnderlineWithFadeSegment(float startXCoord, float startYCoord, float endXCoord, float endYCoord, float valueDifference,
+                                                          float[] rangeHighlightingValues, int[] rangeHighlightingColors,
+                                                          GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors, int indexStart,
+                                                          PointF intersection)
+  {
+    if (endYCoord < startYCoord)
+    {
+      float tempXCoord = startXCoord;
+      float tempYCoord = startYCoord;
+      startXCoord = endXCoord;
+      startYCoord = endYCoord;
+      endXCoord = tempXCoord;
+      endYCoord = tempYCoord;
+    }
 
-        float bottomR = Color.red(rangeHighlightingColors[indexReached - 1]) / 255.0f;
-        float bottomG = Color.green(rangeHighlightingColors[indexReached - 1]) / 255.0f;
-        float bottomB = Color.blue(rangeHighlightingColors[indexReached - 1]) / 255.0f;
-        float topR = lerp(Color.red(rangeHighlightingColors[indexReached]) / 255.0f, bottomR, colorInterpolation);
-        float topG = lerp(Color.green(rangeHighlightingColors[indexReached]) / 255.0f, bottomG, colorInterpolation);
-        float topB = lerp(Color.blue(rangeHighlightingColors[indexReached]) / 255.0f, bottomB, colorInterpolation);
-        for (int i = 0; i < 2; i++)
-        {
-          colors.add(topR);
-          colors.add(topG);
-          colors.add(topB);
-          colors.add(1.0f);
-        }
-      }
+    int indexReached = 1;
+    boolean finish = false;
+
+    float firstNormalisedRangeValue = (rangeHighlightingValues[0] - m_valueAxisMin) / valueDifference;
+    addCoord(coords, endXCoord, firstNormalisedRangeValue);
+    addCoord(coords, startXCoord, firstNormalisedRangeValue);
+    float firstR = Color.red(rangeHighlightingColors[0]) / 255.0f;
+    float firstG = Color.green(rangeHighlightingColors[0]) / 255.0f;
+    float firstB = Color.blue(rangeHighlightingColors[0]) / 255.0f;
+    for (int j = 0; j < 2; j++)
+    {
+      colors.add(firstR, firstB, firstG, 1.0f);
+    }
 
-      indexReached--;
-      for (; indexReached < rangeHighlightingValues.length; indexReached++)
+    for (; indexReached < rangeHighlightingValues.length && !finish; indexReached++)
+    {
+      float colorInterpolation = 0.0f;
+      float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
+      float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
+      if (normalisedRangeEnd > startYCoord)
       {
-        float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
-        float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
-        PointF intersection = new PointF();
-        if (getRangeIntersection(startXCoord, startYCoord, endXCoord, endYCoord, normalisedRangeEnd, intersection))
-        {
-          // Intersect quad.
-          coords.add(endXCoord);
-          coords.add(intersection.y);
-          coords.add(intersection.x);
-          coords.add(intersection.y);
-
-          indices.add(indexStart);
-          indices.add((short)(indexStart + 1));
-          indices.add((short)(indexStart + 3));
-          indices.add(indexStart);
-          indices.add((short)(indexStart + 2));
-          indices.add((short)(indexStart + 3));
-          indexStart += 2;
-
-          float topR = Color.red(rangeHighlightingColors[indexReached]) / 255.0f;
-          float topG = Color.green(rangeHighlightingColors[indexReached]) / 255.0f;
-          float topB = Color.blue(rangeHighlightingColors[indexReached]) / 255.0f;
-          for (int i = 0; i < 2; i++)
-          {
-            colors.add(topR);
-            colors.add(topG);
-            colors.add(topB);
-            colors.add(1.0f);
-          }
-        }
-        else
-        {
-          break;
-        }
+        colorInterpolation = (normalisedRangeEnd - startYCoord) / (normalisedRangeEnd - normalisedRangeStart);
+        normalisedRangeEnd = startYCoord;
+        finish = true;
       }
 
-      // Peak tri.
-      coords.add(endXCoord);
-      coords.add(endYCoord);
+      // Under quad
+      addCoord(coords, endXCoord, normalisedRangeEnd);
+      addCoord(coords, startXCoord, normalisedRangeEnd);
 
-      indices.add(indexStart);
-      indices.add((short)(indexStart + 1));
-      indices.add((short)(indexStart + 2));
+      indices.add(indexStart, indexStart + 1, indexStart + 3);
+      indices.add(indexStart, indexStart + 2, indexStart + 3);
+      indexStart += 2;
 
-      float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
-      float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
-      float colorInterpolation = (normalisedRangeEnd - endYCoord) / (normalisedRangeEnd - normalisedRangeStart);
       float bottomR = Color.red(rangeHighlightingColors[indexReached - 1]) / 255.0f;
       float bottomG = Color.green(rangeHighlightingColors[indexReached - 1]) / 255.0f;
       float bottomB = Color.blue(rangeHighlightingColors[indexReached - 1]) / 255.0f;
       float topR = lerp(Color.red(rangeHighlightingColors[indexReached]) / 255.0f, bottomR, colorInterpolation);
       float topG = lerp(Color.green(rangeHighlightingColors[indexReached]) / 255.0f, bottomG, colorInterpolation);
       float topB = lerp(Color.blue(rangeHighlightingColors[indexReached]) / 255.0f, bottomB, colorInterpolation);
-      colors.add(topR);
-      colors.add(topG);
-      colors.add(topB);
-      colors.add(1.0f);
+      for (int i = 0; i < 2; i++)
+      {
+        colors.add(topR, topG, topB, 1.0f);
+      }
+    }
+
+    indexReached--;
+    for (; indexReached < rangeHighlightingValues.length; indexReached++)
+    {
+      float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
+      float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
+      if (getRangeIntersection(startXCoord, startYCoord, endXCoord, endYCoord, normalisedRangeEnd, intersection))
+      {
+        // Intersect quad.
+        addCoord(coords, endXCoord, intersection.y);
+        addCoord(coords, intersection.x, intersection.y);
+
+        indices.add(indexStart, indexStart + 1, indexStart + 3);
+        indices.add(indexStart, indexStart + 2, indexStart + 3);
+        indexStart += 2;
 
-      indexStart = (short)(coords.size() / 2);
+        float topR = Color.red(rangeHighlightingColors[indexReached]) / 255.0f;
+        float topG = Color.green(rangeHighlightingColors[indexReached]) / 255.0f;
+        float topB = Color.blue(rangeHighlightingColors[indexReached]) / 255.0f;
+        for (int i = 0; i < 2; i++)
+        {
+          colors.add(topR, topG, topB, 1.0f);
+        }
+      }
+      else
+      {
+        break;
+      }
     }
 
-    createVariableSizedMesh(startingYScale, coords, indices, colors);
+    // Peak tri.
+    addCoord(coords, endXCoord, endYCoord);
+
+    indices.add(indexStart, indexStart + 1, indexStart + 2);
+
+    float normalisedRangeStart = (rangeHighlightingValues[indexReached - 1] - m_valueAxisMin) / valueDifference;
+    float normalisedRangeEnd = (rangeHighlightingValues[indexReached] - m_valueAxisMin) / valueDifference;
+    float colorInterpolation = (normalisedRangeEnd - endYCoord) / (normalisedRangeEnd - normalisedRangeStart);
+    float bottomR = Color.red(rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    float bottomG = Color.green(rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    float bottomB = Color.blue(rangeHighlightingColors[indexReached - 1]) / 255.0f;
+    float topR = lerp(Color.red(rangeHighlightingColors[indexReached]) / 255.0f, bottomR, colorInterpolation);
+    float topG = lerp(Color.green(rangeHighlightingColors[indexReached]) / 255.0f, bottomG, colorInterpolation);
+    float topB = lerp(Color.blue(rangeHighlightingColors[indexReached]) / 255.0f, bottomB, colorInterpolation);
+    colors.add(topR, topG, topB, 1.0f);
+
+    return coords.size() / 2;
   }
 
   private float[] modifyRangeHighlightingValuesForFade(float valueDifference)
@@ -1695,47 +2686,117 @@ public class TimeGraph extends ConstraintLayout
     return rangeHighlightingColors;
   }
 
-  private void createVariableSizedMesh(float startingYScale, ArrayList<Float> coords, ArrayList<Short> indices, ArrayList<Float> colors)
+  private void replaceMesh(float startingYScale, GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    replaceRangeHighlightMesh(m_graphSurfaceView.addMesh(0, coords, indices, colors), startingYScale);
+  }
+
+  // Takes normalised coordinates, storing them as OpenGL coordinates.
+  private static void addCoord(GrowableFloatBuffer coords, float xCoord, float yCoord)
+  {
+    coords.add((xCoord * 2.0f) - 1.0f, (yCoord * 2.0f) - 1.0f);
+  }
+
+  private static void addColor(GrowableFloatBuffer colors, @ColorInt int color)
   {
-    float[] coordArray = new float[coords.size()];
-    for (int i = 0; i < coordArray.length; i++)
+    colors.add(Color.red(color) / 255.0f, Color.green(color) / 255.0f, Color.blue(color) / 255.0f, 1.0f);
+  }
+
+  private void replaceRangeHighlightMesh(TransformableRenderable rangeHighlightMesh, float startingYScale)
+  {
+    TransformableRenderable oldDataMesh = m_rangeHighlightMesh;
+    m_rangeHighlightMesh = rangeHighlightMesh;
+    m_rangeHighlightMesh.setYScale(startingYScale);
+    if (oldDataMesh != null)
     {
-      coordArray[i] = (coords.get(i) * 2.0f) - 1.0f;
+      m_graphSurfaceView.removeRenderable(oldDataMesh);
     }
-    short[] indexArray = new short[indices.size()];
-    for (int i = 0; i < indexArray.length; i++)
+  }
+
+  private void createRangeHighlightBandFill(GraphDataBuffer data, float timeDifference, float valueDifference, float startingYScale)
+  {
+    float[] coords = createBandFillCoords(data, 0, data.size(), timeDifference, valueDifference);
+    BandFillRenderable bandFill = m_graphSurfaceView.addBandFill(0, coords);
+    updateRangeHighlightBands(bandFill, valueDifference);
+    replaceRangeHighlightMesh(bandFill, startingYScale);
+  }
+
+  // A bottom and top vertex for each entry, forming a triangle strip down to the bottom of the graph.
+  private float[] createBandFillCoords(GraphDataBuffer data, int start, int end, float timeDifference, float valueDifference)
+  {
+    long[] timestamps = data.getTimestamps();
+    float[] values = data.getValues();
+    float[] coords = new float[(end - start) * 2 * Renderable.COORDS_PER_VERTEX];
+    for (int i = start; i < end; i++)
     {
-      indexArray[i] = indices.get(i);
+      int coordsIndex = (i - start) * 2 * Renderable.COORDS_PER_VERTEX;
+      float xCoord = (((timestamps[i] - m_dataOriginTimestamp) / timeDifference) * 2.0f) - 1.0f;
+      coords[coordsIndex] = xCoord;
+      coords[coordsIndex + 1] = -1.0f;
+      coords[coordsIndex + 2] = xCoord;
+      coords[coordsIndex + 3] = ((((values[i] - m_valueAxisMin) / valueDifference) * 2.0f) - 1.0f);
     }
-    float[] colorArray = new float[colors.size()];
-    for (int i = 0; i < colorArray.length; i++)
+    return coords;
+  }
+
+  // As createBandFillCoords, but adding to a builder so appends can reuse the same memory.
+  private void addBandFillCoords(GrowableFloatBuffer coords, GraphDataBuffer data, int start, int end, float timeDifference,
+                                 float valueDifference)
+  {
+    long[] timestamps = data.getTimestamps();
+    float[] values = data.getValues();
+    for (int i = start; i < end; i++)
     {
-      colorArray[i] = colors.get(i);
+      float xCoord = (((timestamps[i] - m_dataOriginTimestamp) / timeDifference) * 2.0f) - 1.0f;
+      coords.add(xCoord, -1.0f, xCoord, ((((values[i] - m_valueAxisMin) / valueDifference) * 2.0f) - 1.0f));
     }
-
-    replaceMesh(startingYScale, coordArray, indexArray, colorArray);
   }
 
-  private void replaceMesh(float startingYScale, float[] coordArray, short[] indexArray, float[] colorArray)
+  private void updateRangeHighlightBands(BandFillRenderable bandFill, float valueDifference)
   {
-    MeshRenderable oldDataMesh = m_rangeHighlightMesh;
-    m_rangeHighlightMesh = m_graphSurfaceView.addMesh(0, coordArray, indexArray, colorArray);
-    m_rangeHighlightMesh.setYScale(startingYScale);
-    if (oldDataMesh != null)
+    float[] edges = new float[m_rangeHighlightingValues.length];
+    for (int i = 0; i < edges.length; i++)
     {
-      m_graphSurfaceView.removeRenderable(oldDataMesh);
+      edges[i] = toOpenGlY(m_rangeHighlightingValues[i], valueDifference);
+    }
+
+    float[] fadeStarts = null;
+    float[] fadeEnds = null;
+    if (m_rangeHighlightingDisplayMode == DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE)
+    {
+      // Same fade extents as the mesh mode, which stores them as the end and start of each pair of faded values.
+      float[] fadeValues = modifyRangeHighlightingValuesForFade(valueDifference);
+      fadeStarts = new float[edges.length];
+      fadeEnds = new float[edges.length];
+      for (int i = 1; i < edges.length - 1; i++)
+      {
+        fadeStarts[i] = toOpenGlY(fadeValues[(i * 2) - 1], valueDifference);
+        fadeEnds[i] = toOpenGlY(fadeValues[i * 2], valueDifference);
+      }
     }
+    m_graphSurfaceView.setBands(bandFill, edges, fadeStarts, fadeEnds, m_rangeHighlightingColors);
+  }
+
+  private float toOpenGlY(float value, float valueDifference)
+  {
+    return (((value - m_valueAxisMin) / valueDifference) * 2.0f) - 1.0f;
+  }
+
+  private static boolean isShadedDisplayMode(int displayMode)
+  {
+    return displayMode == DISPLAY_MODE_SHADED_UNDERLINE || displayMode == DISPLAY_MODE_SHADED_UNDERLINE_WITH_FADE;
   }
 
   public void scrollData(float normalisedScrollDelta)
   {
     if (m_allowScroll && m_hasEnoughData)
     {
+      cancelSupersededDataRequest();
       long timeDifference = m_endTimestamp - m_startTimestamp;
 
-      long startToFirstDifference = m_startTimestamp - m_firstGraphDataEntry.timestamp;
+      long startToFirstDifference = m_startTimestamp - m_firstDataTimestamp;
       float normalisedStartToFirstDifference = startToFirstDifference / (float)timeDifference;
-      long endToLastDifference = m_endTimestamp - m_lastGraphDataEntry.timestamp;
+      long endToLastDifference = m_endTimestamp - m_lastDataTimestamp;
       float normalisedEndToLastDifference = endToLastDifference / (float)timeDifference;
 
       if (dataFits())
@@ -1764,9 +2825,9 @@ public class TimeGraph extends ConstraintLayout
       long timeChange = (long)(timeDifference * normalisedScrollDelta);
       m_startTimestamp -= timeChange;
       m_endTimestamp -= timeChange;
+      trackScrollVelocity(-timeChange);
 
       normalisedScrollDelta = timeChange / (float)timeDifference; // Take into account rounding errors.
-      m_xOffset += normalisedScrollDelta;
 
       float pixelMove = normalisedScrollDelta * m_graphSurfaceView.getWidth();
       int timeAxisLabelCount = m_timeAxisLabels.size();
@@ -1777,32 +2838,232 @@ public class TimeGraph extends ConstraintLayout
         label.offset += pixelMove;
       }
 
-      float openGlXOffset = m_xOffset * 2.0f;
-      if (m_dataLineStrip != null)
+      applyViewTransform();
+      m_graphSurfaceView.requestRender();
+
+      if (m_onPeriodChangeListener != null)
       {
-        m_dataLineStrip.setXOffset(openGlXOffset);
+        m_onPeriodChangeListener.onPeriodChanged(this, m_startTimestamp, m_endTimestamp);
       }
-      if (m_rangeHighlightMesh != null && m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
+
+      prefetchForScroll();
+    }
+  }
+
+  private void trackScrollVelocity(long timeChange)
+  {
+    long uptime = SystemClock.uptimeMillis();
+    long elapsed = uptime - m_lastScrollUptime;
+    if (elapsed > 0L && elapsed < SCROLL_VELOCITY_RESET_MILLIS)
+    {
+      float velocity = timeChange / (float)elapsed;
+      m_scrollVelocity += (velocity - m_scrollVelocity) * SCROLL_VELOCITY_SMOOTHING;
+    }
+    else if (elapsed >= SCROLL_VELOCITY_RESET_MILLIS)
+    {
+      m_scrollVelocity = 0.0f;
+    }
+    m_lastScrollUptime = uptime;
+  }
+
+  private void prefetchForScroll()
+  {
+    if (m_prefetchOnScroll && !m_refreshing && m_prefetchCancellationSignal == null && !m_dataOutOfDate &&
+        m_dataProvider != null && m_xScale == 1.0f && m_scrollVelocity != 0.0f)
+    {
+      long timeDifference = m_endTimestamp - m_startTimestamp;
+      boolean after = m_scrollVelocity > 0.0f;
+      long distanceToEdge = after ? m_lastDataTimestamp - m_endTimestamp : m_startTimestamp - m_firstDataTimestamp;
+      long lookahead = (long)(Math.abs(m_scrollVelocity) * PREFETCH_LOOKAHEAD_MILLIS);
+      boolean exhausted = after ? m_prefetchAfterExhausted : m_prefetchBeforeExhausted;
+      if (!exhausted && (distanceToEdge < lookahead || distanceToEdge < timeDifference / 2L))
       {
-        m_rangeHighlightMesh.setXOffset(openGlXOffset);
+        prefetch(after, Math.max(timeDifference, lookahead * 2L));
       }
-      if (m_labelMarkersLine != null)
+    }
+  }
+
+  private void prefetch(final boolean after, final long prefetchTimeDifference)
+  {
+    final AsyncGraphDataProvider dataProvider = m_dataProvider;
+    final long startTimestamp = after ? m_lastDataTimestamp + 1L : m_firstDataTimestamp - prefetchTimeDifference;
+    final long endTimestamp = after ? m_lastDataTimestamp + prefetchTimeDifference : m_firstDataTimestamp - 1L;
+    final CancellationSignal cancellationSignal = new CancellationSignal();
+    final GraphDataBuffer buffer = obtainFetchBuffer();
+    m_prefetchCancellationSignal = cancellationSignal;
+    dataProvider.getData(this, buffer, startTimestamp, endTimestamp, m_startTimestamp, m_endTimestamp, cancellationSignal, new AsyncGraphDataProvider.Callback()
+    {
+      @Override
+      public void onDataLoaded()
+      {
+        post(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            // A refresh replaces the loaded data anyway, so only merge while nothing else owns the data buffer.
+            if (m_prefetchCancellationSignal == cancellationSignal && !m_refreshing)
+            {
+              m_prefetchCancellationSignal = null;
+              mergePrefetchedData(after, buffer, startTimestamp, endTimestamp, dataProvider);
+            }
+            else
+            {
+              if (m_prefetchCancellationSignal == cancellationSignal)
+              {
+                m_prefetchCancellationSignal = null;
+              }
+              releaseFetchBuffer(buffer);
+            }
+          }
+        });
+      }
+
+      @Override
+      public void onCancelled()
       {
-        m_labelMarkersLine.setXOffset(openGlXOffset);
+        releaseFetchBuffer(buffer);
+        post(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            if (m_prefetchCancellationSignal == cancellationSignal)
+            {
+              m_prefetchCancellationSignal = null;
+            }
+          }
+        });
       }
-      m_graphSurfaceView.requestRender();
+    });
+  }
 
-      if (m_onPeriodChangeListener != null)
+  // The merge and its geometry are built on the refresh scheduler against the view as it was when the prefetch finished.
+  // Everything the UI thread reads while scrolling, being the loaded period, the exhausted flags and the view transform,
+  // is only updated back on the UI thread once the geometry is in place.
+  private void mergePrefetchedData(final boolean after, final GraphDataBuffer buffer, final long startTimestamp, final long endTimestamp,
+                                   final AsyncGraphDataProvider dataProvider)
+  {
+    m_refreshing = true;
+    final long viewStartTimestamp = m_startTimestamp;
+    final long viewEndTimestamp = m_endTimestamp;
+    m_refreshScheduler.execute(new Runnable()
+    {
+      @Override
+      public void run()
       {
-        m_onPeriodChangeListener.onPeriodChanged(this, m_startTimestamp, m_endTimestamp);
+        int mergeStart = buffer.lowerBound(startTimestamp);
+        int mergeEnd = buffer.lowerBound(endTimestamp + 1L);
+        final boolean merged = mergeEnd > mergeStart && dataProvider == m_dataProvider &&
+            buffer.getSeriesCount() == m_dataBuffer.getSeriesCount();
+        final boolean trimmed = merged && mergePrefetchedData(after, buffer, mergeStart, mergeEnd - mergeStart,
+                                                              viewStartTimestamp, viewEndTimestamp, dataProvider);
+        final long firstDataTimestamp = merged ? m_dataBuffer.getFirstTimestamp() : 0L;
+        final long lastDataTimestamp = merged ? m_dataBuffer.getLastTimestamp() : 0L;
+        releaseFetchBuffer(buffer);
+
+        post(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            if (merged)
+            {
+              m_firstDataTimestamp = firstDataTimestamp;
+              m_lastDataTimestamp = lastDataTimestamp;
+              if (trimmed && after)
+              {
+                m_prefetchBeforeExhausted = false;
+              }
+              else if (trimmed)
+              {
+                m_prefetchAfterExhausted = false;
+              }
+              applyViewTransform();
+              m_graphSurfaceView.requestRender();
+            }
+            else if (after)
+            {
+              m_prefetchAfterExhausted = true;
+            }
+            else
+            {
+              m_prefetchBeforeExhausted = true;
+            }
+
+            m_refreshing = false;
+            onDataJobFinished();
+          }
+        });
+      }
+    }, getRefreshPriority());
+  }
+
+  // Returns whether data behind the scroll direction was dropped. New geometry takes the view transform last applied on
+  // the UI thread, which still fits as the geometry keeps the normalisation of the last refresh.
+  private boolean mergePrefetchedData(boolean after, GraphDataBuffer buffer, int offset, int count, long viewStartTimestamp,
+                                      long viewEndTimestamp, AsyncGraphDataProvider dataProvider)
+  {
+    boolean trimmed = false;
+    m_graphSurfaceView.beginTransaction();
+    try
+    {
+      if (after)
+      {
+        m_dataBuffer.addAll(buffer, offset, count);
+      }
+      else
+      {
+        m_dataBuffer.insert(0, buffer, offset, count);
+      }
+
+      // Drop data far behind the scroll direction so long pans don't grow the loaded data without bound.
+      long keepTimeDifference = (viewEndTimestamp - viewStartTimestamp) * MAX_LOADED_WINDOWS_BEHIND;
+      if (after)
+      {
+        int removeCount = m_dataBuffer.lowerBound(viewStartTimestamp - keepTimeDifference);
+        if (removeCount > 0 && removeCount < m_dataBuffer.size() - 1)
+        {
+          m_dataBuffer.remove(0, removeCount);
+          trimmed = true;
+        }
+      }
+      else
+      {
+        int keepCount = m_dataBuffer.lowerBound(viewEndTimestamp + keepTimeDifference + 1L);
+        if (keepCount > 1 && keepCount < m_dataBuffer.size())
+        {
+          m_dataBuffer.remove(keepCount, m_dataBuffer.size() - keepCount);
+          trimmed = true;
+        }
       }
+      m_dataPyramidValid = false;
+
+      // Geometry keeps the normalisation of the last refresh so the in-progress scroll carries on undisturbed.
+      GraphDataBuffer renderData = decimateData(selectLevelOfDetail(m_dataBuffer));
+      float yScale = m_dataLineStrip != null ? m_dataLineStrip.getYScale() : 1.0f;
+      createDataLineStrip(renderData, m_dataTimeDifference, m_dataValueDifference, yScale);
+      setViewTransform(m_dataLineStrip);
+      if (m_rangeHighlightingValues != null && m_rangeHighlightingColors != null &&
+          m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
+      {
+        createHighlightMesh(renderData, m_dataTimeDifference, m_dataValueDifference, yScale);
+        setViewTransform(m_rangeHighlightMesh);
+      }
+      setTimeAxisLabels(getLabelsForView(dataProvider, m_dataBuffer));
+    }
+    finally
+    {
+      m_graphSurfaceView.commitTransaction();
     }
+    return trimmed;
   }
 
   public void scaleData(float normalisedScaleDelta, float normalisedXCentre)
   {
     if (m_allowScale && m_hasEnoughData && (dataFits() || normalisedScaleDelta > 0.0f))
     {
+      cancelSupersededDataRequest();
       if (m_normalisedForcedXCentre != -1.0f)
       {
         normalisedXCentre = m_normalisedForcedXCentre;
@@ -1810,7 +3071,6 @@ public class TimeGraph extends ConstraintLayout
 
       if (m_beforeScalingStartTimestamp == Long.MIN_VALUE && m_beforeScalingEndTimestamp == Long.MAX_VALUE)
       {
-        scrollData(-m_xOffset);
         m_beforeScalingStartTimestamp = m_startTimestamp;
         m_beforeScalingEndTimestamp = m_endTimestamp;
       }
@@ -1831,8 +3091,8 @@ public class TimeGraph extends ConstraintLayout
           timingScale,
           normalisedXCentre);
 
-      long startToFirstDifference = m_firstGraphDataEntry.timestamp - m_startTimestamp;
-      long endToLastDifference = m_endTimestamp - m_lastGraphDataEntry.timestamp;
+      long startToFirstDifference = m_firstDataTimestamp - m_startTimestamp;
+      long endToLastDifference = m_endTimestamp - m_lastDataTimestamp;
       if (startToFirstDifference > 0 && endToLastDifference <= 0)
       {
         m_startTimestamp += startToFirstDifference;
@@ -1873,19 +3133,11 @@ public class TimeGraph extends ConstraintLayout
           }
         }
 
-        float openGlXScalePosition = (normalisedXCentre * 2.0f) - 1.0f;
-        if (m_dataLineStrip != null)
-        {
-          m_dataLineStrip.setXScale(m_xScale, openGlXScalePosition);
-        }
-        if (m_rangeHighlightMesh != null && m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
-        {
-          m_rangeHighlightMesh.setXScale(m_xScale, openGlXScalePosition);
-        }
-        if (m_labelMarkersLine != null)
+        if (m_useLevelOfDetail && m_dataPyramidValid && !m_refreshing && m_dataLineStrip != null)
         {
-          m_labelMarkersLine.setXScale(m_xScale, openGlXScalePosition);
+          swapLevelOfDetail();
         }
+        applyViewTransform();
         m_graphSurfaceView.requestRender();
 
         if (m_onPeriodChangeListener != null)
@@ -1896,10 +3148,43 @@ public class TimeGraph extends ConstraintLayout
     }
   }
 
+  // Geometry stays in the space it was built in, relative to m_dataOriginTimestamp, and is mapped onto the visible period
+  // by this transform alone. It is derived from the timestamps in double precision each time rather than accumulated, so
+  // long pans and large timestamps do not drift.
+  private void applyViewTransform()
+  {
+    double visibleTimeDifference = (double)Math.max(m_endTimestamp - m_startTimestamp, 1L);
+    double dataTimeDifference = (double)m_dataTimeDifference;
+    m_viewXScale = (float)(dataTimeDifference / visibleTimeDifference);
+    m_viewXOffset = (float)(((dataTimeDifference + (2.0 * (m_dataOriginTimestamp - m_startTimestamp))) / visibleTimeDifference) - 1.0);
+
+    setViewTransform(m_dataLineStrip);
+    if (m_dataPointIndex != null)
+    {
+      m_dataPointIndex.setXScale(m_viewXScale, 0.0f);
+      m_dataPointIndex.setXOffset(m_viewXOffset);
+    }
+    if (m_rangeHighlightingDisplayMode > DISPLAY_MODE_BACKGROUND_WITH_FADE)
+    {
+      setViewTransform(m_rangeHighlightMesh);
+    }
+    setViewTransform(m_labelMarkersLine);
+    setViewTransform(m_timeAxisText);
+  }
+
+  private void setViewTransform(TransformableRenderable renderable)
+  {
+    if (renderable != null)
+    {
+      renderable.setXScale(m_viewXScale, 0.0f);
+      renderable.setXOffset(m_viewXOffset);
+    }
+  }
+
   private boolean dataFits()
   {
     long timeDifference = m_endTimestamp - m_startTimestamp;
-    long firstToLastDifference = m_lastGraphDataEntry.timestamp - m_firstGraphDataEntry.timestamp;
+    long firstToLastDifference = m_lastDataTimestamp - m_firstDataTimestamp;
     return firstToLastDifference > timeDifference;
   }
 
@@ -1931,6 +3216,7 @@ public class TimeGraph extends ConstraintLayout
       m_showRefreshProgress = attributes.getBoolean(R.styleable.TimeGraph_showRefreshProgress, DEFAULT_SHOW_REFRESH_PROGRESS);
       m_graphBackgroundColor = attributes.getInt(R.styleable.TimeGraph_graphBackgroundColor, DEFAULT_GRAPH_BACKGROUND_COLOR);
       m_dataLineColor = attributes.getInt(R.styleable.TimeGraph_dataLineColor, DEFAULT_DATA_LINE_COLOR);
+      m_scrubCursorColor = attributes.getInt(R.styleable.TimeGraph_scrubCursorColor, DEFAULT_SCRUB_CURSOR_COLOR);
 
       m_allowScroll = attributes.getBoolean(R.styleable.TimeGraph_allowScroll, DEFAULT_ALLOW_SCROLL);
       m_allowScale = attributes.getBoolean(R.styleable.TimeGraph_allowScale, DEFAULT_ALLOW_SCALE);
@@ -1951,6 +3237,7 @@ public class TimeGraph extends ConstraintLayout
     m_graphSurfaceView = new GraphSurface(context);
     m_graphSurfaceView.setId(R.id.graph_surface);
     m_graphSurfaceView.initialise(this, m_graphBackgroundColor);
+    m_graphSurfaceView.setScrubCursorColor(m_scrubCursorColor);
     addView(m_graphSurfaceView);
 
     m_valueAxisMinView = new TextView(context);
@@ -2034,6 +3321,12 @@ public class TimeGraph extends ConstraintLayout
     m_graphSurfaceView.setOnDataPointClickedListener(listener);
   }
 
+  // Reports the point closest in time to the finger while it is dragged after a long press.
+  public void setOnDataPointScrubbedListener(OnDataPointScrubbedListener listener)
+  {
+    m_graphSurfaceView.setOnDataPointScrubbedListener(listener);
+  }
+
   public void setOnPeriodChangedListener(OnPeriodChangeListener listener)
   {
     m_onPeriodChangeListener = listener;
@@ -2113,6 +3406,13 @@ public class TimeGraph extends ConstraintLayout
     void onDataPointClicked(TimeGraph graph, long timestamp, float value);
   }
 
+  public interface OnDataPointScrubbedListener
+  {
+    void onScrubStarted(TimeGraph graph);
+    void onDataPointScrubbed(TimeGraph graph, long timestamp, float value);
+    void onScrubFinished(TimeGraph graph);
+  }
+
   public interface OnPeriodChangeListener
   {
     void onPeriodChanged(TimeGraph graph, long startTimestamp, long endTimestamp);
@@ -0,0 +1,59 @@
+package com.voxtric.timegraph.opengl;
+
+import java.nio.IntBuffer;
+
+// Geometry appended to a renderable off the GL thread, gathered until the GL thread next applies it. Appends made in
+// between are copied into the same builders, so once those have grown appending needs no memory of its own.
+final class AppendStage
+{
+  private final GrowableFloatBuffer m_coords = new GrowableFloatBuffer();
+  private final GrowableIntBuffer m_indices = new GrowableIntBuffer();
+  private final GrowableFloatBuffer m_colors = new GrowableFloatBuffer();
+  private boolean m_released = false;
+
+  // Indices are relative to the first vertex of the append, and are rebased onto any vertices already staged. Returns
+  // true when nothing was staged before, meaning the caller needs to have apply called on the GL thread.
+  synchronized boolean stage(GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors, int floatsPerVertex)
+  {
+    boolean wasEmpty = m_coords.size() == 0;
+    if (!m_released && coords.size() > 0)
+    {
+      int vertexStart = m_coords.size() / floatsPerVertex;
+      m_coords.addAll(coords);
+      if (indices != null)
+      {
+        IntBuffer ints = indices.getInts();
+        for (int i = 0; i < indices.size(); i++)
+        {
+          m_indices.add(ints.get(i) + vertexStart);
+        }
+      }
+      if (colors != null)
+      {
+        m_colors.addAll(colors);
+      }
+    }
+    return wasEmpty && m_coords.size() > 0;
+  }
+
+  // Must be called on the GL thread.
+  synchronized void apply(Renderable renderable)
+  {
+    if (m_coords.size() > 0)
+    {
+      renderable.appendStaged(m_coords, m_indices, m_colors);
+      m_coords.clear();
+      m_indices.clear();
+      m_colors.clear();
+    }
+  }
+
+  // Appends staged afterwards are dropped, as there is nothing left to apply them to.
+  synchronized void release()
+  {
+    m_coords.release();
+    m_indices.release();
+    m_colors.release();
+    m_released = true;
+  }
+}
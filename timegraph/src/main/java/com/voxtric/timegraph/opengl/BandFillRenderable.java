@@ -0,0 +1,134 @@
+package com.voxtric.timegraph.opengl;
+
+import android.graphics.Color;
+import android.opengl.GLES20;
+
+import androidx.annotation.ColorInt;
+
+import java.nio.FloatBuffer;
+
+// Fills the area under a line as a single triangle strip, with the fragment shader choosing each band's color from the
+// unscaled y coordinate. Band edges and colors are uniforms, so they change without touching the geometry.
+public class BandFillRenderable extends TransformableRenderable
+{
+  // Edges and colors are vec4 arrays so the shader stays within the 16 fragment uniform vectors GLES 2.0 guarantees.
+  public static final int MAX_BANDS = 7;
+
+  private static final String VERTEX_SHADER_CODE =
+      "uniform float xOffset;" +
+      "uniform float xScale;" +
+      "uniform float xScalePosition;" +
+      "uniform float yScale;" +
+
+      "attribute vec2 vertexPosition;" +
+
+      "varying float fragmentY;" +
+
+      "void main() {" +
+      "  float scaledDifference = (xScalePosition - vertexPosition.x) * (xScale - 1.0);" +
+      "  gl_Position = vec4(vertexPosition.x - scaledDifference + xOffset, ((vertexPosition.y + 1.0) * yScale) - 1.0, 0, 1);" +
+      "  fragmentY = vertexPosition.y;" +
+      "}";
+  // Each edge holds its value followed by where its fade starts and ends. Without a fade the start and end are equal.
+  private static final String FRAGMENT_SHADER_CODE =
+      "precision mediump float;" +
+      "uniform vec4 bandEdges[" + (MAX_BANDS + 1) + "];" +
+      "uniform vec4 bandColors[" + MAX_BANDS + "];" +
+      "uniform float bandCount;" +
+
+      "varying float fragmentY;" +
+
+      "void main() {" +
+      "  if (fragmentY < bandEdges[0].x) {" +
+      "    discard;" +
+      "  }" +
+      "  vec4 color = bandColors[0];" +
+      "  for (int i = 1; i < " + MAX_BANDS + "; i++) {" +
+      "    if (float(i) >= bandCount) {" +
+      "      break;" +
+      "    }" +
+      "    vec4 edge = bandEdges[i];" +
+      "    float amount = edge.z > edge.y ? clamp((fragmentY - edge.y) / (edge.z - edge.y), 0.0, 1.0) : step(edge.x, fragmentY);" +
+      "    color = mix(color, bandColors[i], amount);" +
+      "  }" +
+      "  gl_FragColor = color;" +
+      "}";
+  private static final ShaderSource SHADER_SOURCE = new ShaderSource(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE,
+                                                                     new String[] { "vertexPosition" },
+                                                                     new String[] { "xOffset", "xScale", "xScalePosition", "yScale",
+                                                                                    "bandEdges", "bandColors", "bandCount" });
+  private static final int UNIFORM_BAND_EDGES = 4;
+  private static final int UNIFORM_BAND_COLORS = 5;
+  private static final int UNIFORM_BAND_COUNT = 6;
+
+  private final FloatBuffer m_bandEdgeBuffer = allocateFloatBuffer((MAX_BANDS + 1) * 4);
+  private final FloatBuffer m_bandColorBuffer = allocateFloatBuffer(MAX_BANDS * COLORS_PER_VERTEX);
+  private int m_bandCount = 0;
+
+  BandFillRenderable(int drawOrder, float[] coords)
+  {
+    super(drawOrder, coords, Color.TRANSPARENT);
+  }
+
+  // Edges are in the same y space as the vertices and there must be one more edge than colors. Fades may be null, or give
+  // the start and end of the blend across each edge, with entries for the first and last edges ignored. Must be called
+  // on the GL thread once drawn, as GraphSurface.setBands does.
+  public void setBands(float[] edges, float[] fadeStarts, float[] fadeEnds, @ColorInt int[] colors)
+  {
+    checkBands(edges, colors);
+
+    m_bandEdgeBuffer.clear();
+    for (int i = 0; i < edges.length; i++)
+    {
+      boolean faded = fadeStarts != null && fadeEnds != null && i > 0 && i < colors.length;
+      m_bandEdgeBuffer.put(edges[i]);
+      m_bandEdgeBuffer.put(faded ? fadeStarts[i] : edges[i]);
+      m_bandEdgeBuffer.put(faded ? fadeEnds[i] : edges[i]);
+      m_bandEdgeBuffer.put(0.0f);
+    }
+    m_bandEdgeBuffer.position(0);
+
+    m_bandColorBuffer.clear();
+    for (@ColorInt int color : colors)
+    {
+      m_bandColorBuffer.put(Color.red(color) / 255.0f);
+      m_bandColorBuffer.put(Color.green(color) / 255.0f);
+      m_bandColorBuffer.put(Color.blue(color) / 255.0f);
+      m_bandColorBuffer.put(1.0f);
+    }
+    m_bandColorBuffer.position(0);
+    m_bandCount = colors.length;
+  }
+
+  static void checkBands(float[] edges, @ColorInt int[] colors)
+  {
+    if (colors.length > MAX_BANDS || edges.length != colors.length + 1)
+    {
+      throw new IllegalArgumentException("Between 1 and " + MAX_BANDS + " bands are supported, with one more edge than colors.");
+    }
+  }
+
+  @Override
+  int getBufferUsage()
+  {
+    return GLES20.GL_DYNAMIC_DRAW;
+  }
+
+  @Override
+  void draw(RenderContext context)
+  {
+    ShaderProgram program = context.useProgram(SHADER_SOURCE);
+
+    bindVertexBuffer();
+    GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_VERTEX_POSITION), COORDS_PER_VERTEX,
+                                 GLES20.GL_FLOAT, false,
+                                 COORDS_PER_VERTEX * FLOAT_BYTES, 0);
+
+    applyTransform(program);
+    program.setUniform4(UNIFORM_BAND_EDGES, MAX_BANDS + 1, m_bandEdgeBuffer);
+    program.setUniform4(UNIFORM_BAND_COLORS, MAX_BANDS, m_bandColorBuffer);
+    program.setUniform(UNIFORM_BAND_COUNT, m_bandCount);
+
+    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, getVertexCount());
+  }
+}
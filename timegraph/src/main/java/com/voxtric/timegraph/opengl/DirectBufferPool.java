@@ -0,0 +1,111 @@
+package com.voxtric.timegraph.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+// Recycles native-order direct buffers in power of two sizes, so rebuilding geometry reuses the memory the geometry it
+// replaces was using. Buffers come back when their renderable is removed or a builder is released.
+final class DirectBufferPool
+{
+  private static final int MIN_BUCKET_SHIFT = 10;
+  private static final int MAX_BUCKET_SHIFT = 30;
+  private static final int MAX_BUFFERS_PER_BUCKET = 4;
+  private static final long MAX_POOLED_BYTES = 16L * 1024L * 1024L;
+
+  private static final ArrayList<ArrayList<ByteBuffer>> s_buckets = new ArrayList<>();
+  private static long s_pooledBytes = 0L;
+
+  static
+  {
+    for (int shift = 0; shift <= MAX_BUCKET_SHIFT; shift++)
+    {
+      s_buckets.add(new ArrayList<ByteBuffer>());
+    }
+  }
+
+  private DirectBufferPool()
+  {
+  }
+
+  // The buffer returned holds at least byteCount bytes, and is cleared with its position at 0. Sizes beyond the largest
+  // bucket are allocated exactly, and are never pooled.
+  static synchronized ByteBuffer acquire(int byteCount)
+  {
+    if (byteCount < 0)
+    {
+      throw new IllegalArgumentException("Byte count must not be negative.");
+    }
+
+    ByteBuffer buffer;
+    if (byteCount > (1 << MAX_BUCKET_SHIFT))
+    {
+      buffer = ByteBuffer.allocateDirect(byteCount).order(ByteOrder.nativeOrder());
+    }
+    else
+    {
+      int shift = bucketShift(byteCount);
+      ArrayList<ByteBuffer> bucket = s_buckets.get(shift);
+      if (bucket.isEmpty())
+      {
+        buffer = ByteBuffer.allocateDirect(1 << shift).order(ByteOrder.nativeOrder());
+      }
+      else
+      {
+        buffer = bucket.remove(bucket.size() - 1);
+        s_pooledBytes -= buffer.capacity();
+        buffer.clear();
+      }
+    }
+    return buffer;
+  }
+
+  static synchronized void release(ByteBuffer buffer)
+  {
+    int capacity = buffer.capacity();
+    if (capacity >= (1 << MIN_BUCKET_SHIFT) && Integer.bitCount(capacity) == 1 && s_pooledBytes + capacity <= MAX_POOLED_BYTES)
+    {
+      ArrayList<ByteBuffer> bucket = s_buckets.get(Integer.numberOfTrailingZeros(capacity));
+      if (bucket.size() < MAX_BUFFERS_PER_BUCKET)
+      {
+        bucket.add(buffer);
+        s_pooledBytes += capacity;
+      }
+    }
+  }
+
+  // Lets the garbage collector have the pooled buffers back, such as once a graph's surface goes away.
+  static synchronized void trim()
+  {
+    for (ArrayList<ByteBuffer> bucket : s_buckets)
+    {
+      bucket.clear();
+    }
+    s_pooledBytes = 0L;
+  }
+
+  // Copies the used bytes into a larger pooled buffer and recycles the old one.
+  static ByteBuffer grow(ByteBuffer buffer, int usedBytes, int requiredBytes)
+  {
+    // Doubling stops short of overflowing, after which buffers only grow to what is required.
+    int doubledBytes = buffer.capacity() <= Integer.MAX_VALUE / 2 ? buffer.capacity() * 2 : requiredBytes;
+    ByteBuffer newBuffer = acquire(Math.max(requiredBytes, doubledBytes));
+    ByteBuffer usedRange = buffer.duplicate();
+    usedRange.position(0);
+    usedRange.limit(usedBytes);
+    newBuffer.put(usedRange);
+    newBuffer.clear();
+    release(buffer);
+    return newBuffer;
+  }
+
+  private static int bucketShift(int byteCount)
+  {
+    int shift = MIN_BUCKET_SHIFT;
+    while (shift < MAX_BUCKET_SHIFT && (1 << shift) < byteCount)
+    {
+      shift++;
+    }
+    return shift;
+  }
+}
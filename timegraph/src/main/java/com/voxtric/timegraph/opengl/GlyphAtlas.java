@@ -0,0 +1,205 @@
+package com.voxtric.timegraph.opengl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.util.Arrays;
+
+// Rasterises glyphs of a single text size into a grid of equally sized cells in an alpha texture. Glyphs are drawn the
+// first time they are asked for and the texture is uploaded again on the next bind, so laying out text only touches
+// the bitmap for characters not seen before.
+final class GlyphAtlas
+{
+  private static final int COLUMNS = 16;
+  private static final int ROWS = 8;
+  private static final int CELL_PADDING = 1;
+  private static final int ASCII_SLOT_COUNT = 128;
+
+  private final float m_textSize;
+  private final Paint m_paint;
+  private final Bitmap m_bitmap;
+  private final Canvas m_canvas;
+  private final int m_cellWidth;
+  private final int m_cellHeight;
+  private final float m_baseline;
+
+  private final int[] m_asciiSlots = new int[ASCII_SLOT_COUNT];
+  private final char[] m_slotChars = new char[COLUMNS * ROWS];
+  private final float[] m_slotAdvances = new float[COLUMNS * ROWS];
+  private final char[] m_drawnChar = new char[1];
+  private int m_slotCount = 0;
+
+  private int m_textureHandle = 0;
+  private boolean m_dirty = true;
+  private boolean m_released = false;
+
+  GlyphAtlas(float textSize)
+  {
+    m_textSize = textSize;
+    m_paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    m_paint.setTextSize(textSize);
+    m_paint.setColor(Color.WHITE);
+
+    Paint.FontMetrics fontMetrics = m_paint.getFontMetrics();
+    m_cellWidth = (int)Math.ceil(Math.max(m_paint.measureText("W"), textSize)) + (CELL_PADDING * 2);
+    m_cellHeight = (int)Math.ceil(fontMetrics.descent - fontMetrics.ascent) + (CELL_PADDING * 2);
+    m_baseline = CELL_PADDING - fontMetrics.ascent;
+
+    m_bitmap = Bitmap.createBitmap(m_cellWidth * COLUMNS, m_cellHeight * ROWS, Bitmap.Config.ALPHA_8);
+    m_bitmap.eraseColor(Color.TRANSPARENT);
+    m_canvas = new Canvas(m_bitmap);
+
+    Arrays.fill(m_asciiSlots, -1);
+  }
+
+  float getTextSize()
+  {
+    return m_textSize;
+  }
+
+  int getCellWidth()
+  {
+    return m_cellWidth;
+  }
+
+  int getCellHeight()
+  {
+    return m_cellHeight;
+  }
+
+  // Returns the slot holding the glyph, drawing it first if needed, or -1 once the atlas has no free slots left.
+  synchronized int getGlyph(char character)
+  {
+    int slot = -1;
+    if (character < ASCII_SLOT_COUNT)
+    {
+      slot = m_asciiSlots[character];
+    }
+    else
+    {
+      for (int i = 0; i < m_slotCount && slot == -1; i++)
+      {
+        if (m_slotChars[i] == character)
+        {
+          slot = i;
+        }
+      }
+    }
+
+    if (slot == -1 && m_slotCount < m_slotChars.length && !m_released)
+    {
+      slot = m_slotCount++;
+      m_slotChars[slot] = character;
+      if (character < ASCII_SLOT_COUNT)
+      {
+        m_asciiSlots[character] = slot;
+      }
+
+      m_drawnChar[0] = character;
+      m_slotAdvances[slot] = m_paint.measureText(m_drawnChar, 0, 1);
+      m_canvas.drawText(m_drawnChar, 0, 1,
+                        ((slot % COLUMNS) * m_cellWidth) + CELL_PADDING,
+                        ((slot / COLUMNS) * m_cellHeight) + m_baseline,
+                        m_paint);
+      m_dirty = true;
+    }
+    return slot;
+  }
+
+  synchronized float getAdvance(int slot)
+  {
+    return m_slotAdvances[slot];
+  }
+
+  float getSlotLeft(int slot)
+  {
+    return (float)((slot % COLUMNS) * m_cellWidth) / (m_cellWidth * COLUMNS);
+  }
+
+  float getSlotRight(int slot)
+  {
+    return (float)(((slot % COLUMNS) + 1) * m_cellWidth) / (m_cellWidth * COLUMNS);
+  }
+
+  float getSlotTop(int slot)
+  {
+    return (float)((slot / COLUMNS) * m_cellHeight) / (m_cellHeight * ROWS);
+  }
+
+  float getSlotBottom(int slot)
+  {
+    return (float)(((slot / COLUMNS) + 1) * m_cellHeight) / (m_cellHeight * ROWS);
+  }
+
+  // Laid out width of the text in pixels, drawing any glyphs it needs that are missing.
+  float measure(String text)
+  {
+    float width = 0.0f;
+    for (int i = 0; i < text.length(); i++)
+    {
+      int slot = getGlyph(text.charAt(i));
+      if (slot != -1)
+      {
+        width += getAdvance(slot);
+      }
+    }
+    return width;
+  }
+
+  // Must be called on the GL thread. Binds the texture to the active unit, uploading the bitmap if glyphs were drawn
+  // since the last upload. Returns false once released, as the atlas can then no longer be drawn from.
+  synchronized boolean bind()
+  {
+    if (!m_released)
+    {
+      if (m_textureHandle == 0)
+      {
+        int[] handles = new int[1];
+        GLES20.glGenTextures(1, handles, 0);
+        m_textureHandle = handles[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, m_textureHandle);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        m_dirty = true;
+      }
+      else
+      {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, m_textureHandle);
+      }
+
+      if (m_dirty)
+      {
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, m_bitmap, 0);
+        m_dirty = false;
+      }
+    }
+    return !m_released;
+  }
+
+  // Forgets a texture belonging to a lost context. The bitmap is kept, so it is uploaded again when next bound.
+  synchronized void invalidate()
+  {
+    m_textureHandle = 0;
+  }
+
+  // Must be called on the GL thread.
+  synchronized void release()
+  {
+    if (m_textureHandle != 0)
+    {
+      GLES20.glDeleteTextures(1, new int[] { m_textureHandle }, 0);
+      m_textureHandle = 0;
+    }
+    if (!m_released)
+    {
+      m_bitmap.recycle();
+      m_released = true;
+    }
+  }
+}
@@ -7,14 +7,28 @@ import android.opengl.GLSurfaceView;
 import androidx.annotation.ColorInt;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 class GraphRenderer implements GLSurfaceView.Renderer
 {
+  private static final Comparator<Renderable> DRAW_ORDER_COMPARATOR = new Comparator<Renderable>()
+  {
+    @Override
+    public int compare(Renderable first, Renderable second)
+    {
+      return first.getDrawOrder() < second.getDrawOrder() ? -1 : (first.getDrawOrder() == second.getDrawOrder() ? 0 : 1);
+    }
+  };
+
   private final ArrayList<Renderable> m_renderables = new ArrayList<>();
+  private RenderContext m_renderContext = null;
   private @ColorInt int m_clearColor;
+  private int m_width = 0;
+  private int m_height = 0;
 
   GraphRenderer(@ColorInt int clearColor)
   {
@@ -28,12 +42,27 @@ class GraphRenderer implements GLSurfaceView.Renderer
                         Color.green(m_clearColor) / 255.0f,
                         Color.blue(m_clearColor) / 255.0f,
                         Color.alpha(m_clearColor) / 255.0f);
+
+    // A new context has none of the previous context's programs or buffer objects, so rebuild them all.
+    m_renderContext = new RenderContext();
+    for (Renderable renderable : m_renderables)
+    {
+      renderable.invalidate();
+      renderable.onContextChanged(m_renderContext);
+      renderable.upload();
+    }
   }
 
   @Override
   public void onSurfaceChanged(GL10 unused, int width, int height)
   {
     GLES20.glViewport(0, 0, width, height);
+    m_width = width;
+    m_height = height;
+    for (Renderable renderable : m_renderables)
+    {
+      renderable.onViewportChanged(width, height);
+    }
   }
 
   @Override
@@ -42,7 +71,7 @@ class GraphRenderer implements GLSurfaceView.Renderer
     GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
     for (Renderable renderable : m_renderables)
     {
-      renderable.draw();
+      renderable.draw(m_renderContext);
     }
   }
 
@@ -60,30 +89,35 @@ class GraphRenderer implements GLSurfaceView.Renderer
     return m_clearColor;
   }
 
-  void addRenderable(Renderable renderable)
+  // Must be called on the GL thread. Updates run first, then the additions are uploaded and the removals released, so a
+  // renderable both added and removed in one transaction never stays in the scene. The draw order is sorted once at the
+  // end, with the sort being stable so renderables sharing an order keep the order they were added in.
+  void applyTransaction(SceneTransaction transaction)
   {
-    boolean added = false;
-    for (int i = 0; i < m_renderables.size() && !added; i++)
+    for (Runnable update : transaction.updates)
     {
-      if (renderable.getDrawOrder() < m_renderables.get(i).getDrawOrder())
+      update.run();
+    }
+    for (Renderable renderable : transaction.added)
+    {
+      if (m_renderContext != null)
       {
-        m_renderables.add(null);
-        for (int j = m_renderables.size() - 1; j > i; j--)
-        {
-          m_renderables.set(j, m_renderables.get(j - 1));
-        }
-        m_renderables.set(i, renderable);
-        added = true;
+        renderable.onContextChanged(m_renderContext);
       }
+      renderable.upload();
+      renderable.onViewportChanged(m_width, m_height);
+      m_renderables.add(renderable);
     }
-    if (!added)
+    for (Renderable renderable : transaction.removed)
     {
-      m_renderables.add(renderable);
+      if (m_renderables.remove(renderable))
+      {
+        renderable.release();
+      }
+    }
+    if (!transaction.added.isEmpty())
+    {
+      Collections.sort(m_renderables, DRAW_ORDER_COMPARATOR);
     }
-  }
-
-  void removeRenderable(Renderable renderable)
-  {
-    m_renderables.remove(renderable);
   }
 }
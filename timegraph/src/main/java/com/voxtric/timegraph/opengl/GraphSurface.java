@@ -3,17 +3,16 @@ package com.voxtric.timegraph.opengl;
 import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
+import android.view.HapticFeedbackConstants;
 import android.view.MotionEvent;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 
 import androidx.annotation.ColorInt;
 
-import com.voxtric.timegraph.ClickableDataPoint;
+import com.voxtric.timegraph.DataPointIndex;
 import com.voxtric.timegraph.TimeGraph;
 
-import java.util.ArrayList;
-
 public class GraphSurface extends GLSurfaceView
 {
   private TimeGraph m_timeGraph = null;
@@ -21,10 +20,25 @@ public class GraphSurface extends GLSurfaceView
 
   private boolean m_transformed = false;
   private long m_clickBeginTimestamp = 0L;
-  private ArrayList<ClickableDataPoint> m_clickableDataPoints = null;
-  private float m_clickDistanceSquared = -Float.MAX_VALUE;
+  private DataPointIndex m_clickableDataPoints = null;
   private TimeGraph.OnDataPointClickedListener m_onDataPointClickedListener = null;
 
+  // Scrubbing starts on a long press and then tracks the finger, so the cursor only ever needs its offset uniform changed.
+  private TimeGraph.OnDataPointScrubbedListener m_onDataPointScrubbedListener = null;
+  private boolean m_scrubbing = false;
+  private int m_scrubbedIndex = -1;
+  private DataPointIndex m_scrubbedDataPoints = null;
+  private LineRenderable m_scrubCursor = null;
+  private @ColorInt int m_scrubCursorColor = 0;
+  private final Runnable m_beginScrub = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      beginScrub();
+    }
+  };
+
   private float m_startPixelX = 0.0f;
   private float m_startPixelY = 0.0f;
 
@@ -35,6 +49,11 @@ public class GraphSurface extends GLSurfaceView
 
   private ViewGroup[] m_disallowTouchViews = null;
 
+  private final ThreadLocal<SceneTransaction> m_transaction = new ThreadLocal<>();
+
+  // Text is laid out from one atlas at a time, replaced whenever a different text size is asked for.
+  private GlyphAtlas m_glyphAtlas = null;
+
   public GraphSurface(Context context)
   {
     super(context);
@@ -60,9 +79,9 @@ public class GraphSurface extends GLSurfaceView
   protected void onDetachedFromWindow()
   {
     super.onDetachedFromWindow();
-    Renderable.releaseShader();
-    TransformableRenderable.releaseShader();
-    MeshRenderable.releaseShader();
+    removeCallbacks(m_beginScrub);
+    // Pooled buffers are only spare memory, so give them back while the graph is off screen.
+    DirectBufferPool.trim();
   }
 
   @Override
@@ -83,6 +102,11 @@ public class GraphSurface extends GLSurfaceView
       m_ignoreScroll = false;
       handled = true;
 
+      if (m_onDataPointScrubbedListener != null && m_clickableDataPoints != null)
+      {
+        postDelayed(m_beginScrub, ViewConfiguration.getLongPressTimeout());
+      }
+
       if (m_disallowTouchViews != null)
       {
         for (ViewGroup view : m_disallowTouchViews)
@@ -94,19 +118,28 @@ public class GraphSurface extends GLSurfaceView
       break;
 
     case MotionEvent.ACTION_UP:
+    case MotionEvent.ACTION_CANCEL:
+      removeCallbacks(m_beginScrub);
+      if (m_scrubbing)
+      {
+        finishScrub();
+      }
+
       float xDifference = m_startPixelX - motionEvent.getX();
       float yDifference = m_startPixelY - motionEvent.getY();
       float distanceSquared = (xDifference * xDifference) + (yDifference * yDifference);
 
-      if ((m_onDataPointClickedListener != null) &&
+      float clickDistance = getClickDistance();
+      if ((motionEvent.getActionMasked() == MotionEvent.ACTION_UP) &&
+          (m_onDataPointClickedListener != null) && (m_clickableDataPoints != null) &&
           (System.currentTimeMillis() - m_clickBeginTimestamp < ViewConfiguration.getLongPressTimeout()) &&
-          (distanceSquared < (m_clickDistanceSquared * 1.1f)))
+          (distanceSquared < (clickDistance * clickDistance * 1.1f)))
       {
         clickDataPoint(motionEvent.getX(), motionEvent.getY());
       }
       if (m_transformed)
       {
-        m_timeGraph.refresh(false);
+        m_timeGraph.finishTransform();
       }
 
       if (m_disallowTouchViews != null)
@@ -122,6 +155,12 @@ public class GraphSurface extends GLSurfaceView
       break;
 
     case MotionEvent.ACTION_POINTER_DOWN:
+      removeCallbacks(m_beginScrub);
+      if (m_scrubbing)
+      {
+        handled = true;
+        break;
+      }
       m_scaling = true;
       float startingXDifference = motionEvent.getX(0) - motionEvent.getX(1);
       float startingYDifference = motionEvent.getY(0) - motionEvent.getY(1);
@@ -135,6 +174,25 @@ public class GraphSurface extends GLSurfaceView
       break;
 
     case MotionEvent.ACTION_MOVE:
+      if (m_scrubbing)
+      {
+        scrubTo(motionEvent.getX());
+        handled = true;
+        break;
+      }
+      if (!m_transformed && m_onDataPointScrubbedListener != null && !m_scaling)
+      {
+        // Wait for the finger to move beyond the touch slop before scrolling, so a long press can still begin a scrub.
+        float slopXDifference = m_startPixelX - motionEvent.getX();
+        float slopYDifference = m_startPixelY - motionEvent.getY();
+        int touchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+        if ((slopXDifference * slopXDifference) + (slopYDifference * slopYDifference) < touchSlop * touchSlop)
+        {
+          handled = true;
+          break;
+        }
+      }
+      removeCallbacks(m_beginScrub);
       m_transformed = true;
       if (!m_scaling)
       {
@@ -171,46 +229,102 @@ public class GraphSurface extends GLSurfaceView
     return handled;
   }
 
-  public void setClickablePoints(ArrayList<ClickableDataPoint> clickableDataPoints)
+  public void setClickablePoints(DataPointIndex clickableDataPoints)
   {
-    m_clickableDataPoints = clickableDataPoints.isEmpty() ? null : clickableDataPoints;
-    if (m_clickableDataPoints == null)
+    m_clickableDataPoints = (clickableDataPoints == null || clickableDataPoints.isEmpty()) ? null : clickableDataPoints;
+  }
+
+  public void setOnDataPointClickedListener(TimeGraph.OnDataPointClickedListener listener)
+  {
+    m_onDataPointClickedListener = listener;
+  }
+
+  private void clickDataPoint(float x, float y)
+  {
+    int closestIndex = m_clickableDataPoints.findClosest(x, y, getWidth(), getHeight(), getClickDistance());
+    if (closestIndex != -1)
     {
-      m_clickDistanceSquared = -Float.MAX_VALUE;
+      m_onDataPointClickedListener.onDataPointClicked(m_timeGraph, m_clickableDataPoints.getTimestamp(closestIndex),
+                                                      m_clickableDataPoints.getValue(closestIndex));
     }
-    else
+  }
+
+  public void setOnDataPointScrubbedListener(TimeGraph.OnDataPointScrubbedListener listener)
+  {
+    m_onDataPointScrubbedListener = listener;
+    if (listener == null && m_scrubbing)
     {
-      float clickDistance = (float)Math.sqrt((getWidth() * getWidth()) + (getHeight() * getHeight())) * 0.025f;
-      m_clickDistanceSquared = clickDistance * clickDistance;
+      finishScrub();
     }
   }
 
-  public void setOnDataPointClickedListener(TimeGraph.OnDataPointClickedListener listener)
+  public void setScrubCursorColor(@ColorInt int color)
   {
-    m_onDataPointClickedListener = listener;
+    m_scrubCursorColor = color;
+    if (m_scrubCursor != null)
+    {
+      setColor(m_scrubCursor, color);
+    }
   }
 
-  private void clickDataPoint(float x, float y)
+  public boolean isScrubbing()
+  {
+    return m_scrubbing;
+  }
+
+  private void beginScrub()
   {
-    ClickableDataPoint closestDataPoint = null;
-    float closestDistanceSquared = Float.MAX_VALUE;
-    for (ClickableDataPoint dataPoint : m_clickableDataPoints)
+    if (m_onDataPointScrubbedListener != null && m_clickableDataPoints != null && !m_transformed && !m_scaling)
     {
-      float xDifference = x - (dataPoint.normalisedX * getWidth());
-      float yDifference = y - (dataPoint.normalisedY * getHeight());
-      float distanceSquared = (xDifference * xDifference) + (yDifference * yDifference);
-      if ((distanceSquared < m_clickDistanceSquared) && (distanceSquared < closestDistanceSquared))
+      m_scrubbing = true;
+      m_scrubbedIndex = -1;
+      m_scrubbedDataPoints = null;
+      performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+
+      // Removing the cursor recycles its buffers, so each scrub gets a new one.
+      m_scrubCursor = new LineRenderable(2, new float[] { 0.0f, -1.0f, 0.0f, 1.0f }, m_scrubCursorColor);
+      addToScene(m_scrubCursor);
+
+      m_onDataPointScrubbedListener.onScrubStarted(m_timeGraph);
+      scrubTo(m_previousPixelX);
+    }
+  }
+
+  private void scrubTo(float pixelX)
+  {
+    DataPointIndex dataPoints = m_clickableDataPoints;
+    if (dataPoints != null)
+    {
+      int index = dataPoints.findClosestX(pixelX / getWidth());
+      float normalisedX = dataPoints.getNormalisedX(index);
+      m_scrubCursor.setXOffset((normalisedX * 2.0f) - 1.0f);
+      requestRender();
+
+      if (index != m_scrubbedIndex || dataPoints != m_scrubbedDataPoints)
       {
-        closestDistanceSquared = distanceSquared;
-        closestDataPoint = dataPoint;
+        m_scrubbedIndex = index;
+        m_scrubbedDataPoints = dataPoints;
+        m_onDataPointScrubbedListener.onDataPointScrubbed(m_timeGraph, dataPoints.getTimestamp(index), dataPoints.getValue(index));
       }
     }
-    if (closestDataPoint != null)
+  }
+
+  private void finishScrub()
+  {
+    m_scrubbing = false;
+    m_scrubbedDataPoints = null;
+    removeRenderable(m_scrubCursor);
+    if (m_onDataPointScrubbedListener != null)
     {
-      m_onDataPointClickedListener.onDataPointClicked(m_timeGraph, closestDataPoint.timestamp, closestDataPoint.value);
+      m_onDataPointScrubbedListener.onScrubFinished(m_timeGraph);
     }
   }
 
+  private float getClickDistance()
+  {
+    return (float)Math.sqrt((getWidth() * getWidth()) + (getHeight() * getHeight())) * 0.025f;
+  }
+
   public void setDisallowHorizontalScrollViews(ViewGroup[] views)
   {
     m_disallowTouchViews = views;
@@ -236,57 +350,280 @@ public class GraphSurface extends GLSurfaceView
 
   public LineStripRenderable addLineStrip(int drawOrder, float[] coords, @ColorInt int color)
   {
-    final LineStripRenderable lineStrip = new LineStripRenderable(drawOrder, coords, color);
-    queueEvent(new Runnable()
+    return addLineStrip(drawOrder, coords, 1, new int[] { color });
+  }
+
+  public LineStripRenderable addLineStrip(int drawOrder, float[] coords, int seriesCount, @ColorInt int[] colors)
+  {
+    LineStripRenderable lineStrip = new LineStripRenderable(drawOrder, coords, seriesCount, colors);
+    addToScene(lineStrip);
+    return lineStrip;
+  }
+
+  public LineRenderable addLine(int drawOrder, float[] coords, @ColorInt int color)
+  {
+    LineRenderable line = new LineRenderable(drawOrder, coords, color);
+    addToScene(line);
+    return line;
+  }
+
+  public MeshRenderable addMesh(int drawOrder, float[] coords, int[] indices, float[] colors)
+  {
+    MeshRenderable mesh = new MeshRenderable(drawOrder, coords, indices, colors);
+    addToScene(mesh);
+    return mesh;
+  }
+
+  // Takes over the builders' buffers, so they are left empty.
+  public MeshRenderable addMesh(int drawOrder, GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    MeshRenderable mesh = new MeshRenderable(drawOrder, coords, indices, colors);
+    addToScene(mesh);
+    return mesh;
+  }
+
+  // Coordinates hold a bottom and top vertex for each data point, forming a triangle strip.
+  public BandFillRenderable addBandFill(int drawOrder, float[] coords)
+  {
+    BandFillRenderable bandFill = new BandFillRenderable(drawOrder, coords);
+    addToScene(bandFill);
+    return bandFill;
+  }
+
+  public void appendToBandFill(final BandFillRenderable bandFill, final float[] coords)
+  {
+    updateScene(new Runnable()
     {
       @Override
       public void run()
       {
-        m_renderer.addRenderable(lineStrip);
-        requestRender();
+        bandFill.appendVertices(coords, 0, coords.length);
       }
     });
-    return lineStrip;
   }
 
-  public LineRenderable addLine(int drawOrder, float[] coords, @ColorInt int color)
+  public void appendToLineStrip(final LineStripRenderable lineStrip, final float[] coords)
   {
-    final LineRenderable line = new LineRenderable(drawOrder, coords, color);
-    queueEvent(new Runnable()
+    updateScene(new Runnable()
     {
       @Override
       public void run()
       {
-        m_renderer.addRenderable(line);
-        requestRender();
+        lineStrip.appendVertices(coords, 0, coords.length);
       }
     });
-    return line;
   }
 
-  public MeshRenderable addMesh(int drawOrder, float[] coords, short[] indices, float[] colors)
+  public void appendToMesh(final MeshRenderable mesh, final float[] coords, final int[] indices, final float[] colors)
   {
-    final MeshRenderable mesh = new MeshRenderable(drawOrder, coords, indices, colors);
-    queueEvent(new Runnable()
+    updateScene(new Runnable()
     {
       @Override
       public void run()
       {
-        m_renderer.addRenderable(mesh);
-        requestRender();
+        mesh.appendMesh(coords, indices, colors);
       }
     });
-    return mesh;
   }
 
-  public void removeRenderable(final Renderable renderable)
+  // Draws read a renderable's colors on the GL thread, so they are changed there too rather than underneath a draw.
+  public void setColor(final TransformableRenderable renderable, final @ColorInt int color)
+  {
+    updateScene(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        renderable.setColor(color);
+      }
+    });
+  }
+
+  public void setSeriesColor(final LineStripRenderable lineStrip, final int series, final @ColorInt int color)
+  {
+    updateScene(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        lineStrip.setSeriesColor(series, color);
+      }
+    });
+  }
+
+  // As with setColor, but the bands are checked straight away so mistakes surface on the caller.
+  public void setBands(final BandFillRenderable bandFill, final float[] edges, final float[] fadeStarts, final float[] fadeEnds,
+                       final @ColorInt int[] colors)
+  {
+    BandFillRenderable.checkBands(edges, colors);
+    updateScene(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        bandFill.setBands(edges, fadeStarts, fadeEnds, colors);
+      }
+    });
+  }
+
+  // The builders are copied before returning, so can be cleared and reused straight away. Appends made before the GL
+  // thread gets round to applying them are gathered together, with only the first scheduling an update, so appending
+  // to the same renderable often allocates nothing.
+  public void appendToMesh(MeshRenderable mesh, GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    stageAppend(mesh, coords, indices, colors);
+  }
+
+  // As with appendToMesh, the builder is copied before returning.
+  public void appendToLineStrip(LineStripRenderable lineStrip, GrowableFloatBuffer coords)
+  {
+    stageAppend(lineStrip, coords, null, null);
+  }
+
+  // As with appendToMesh, the builder is copied before returning.
+  public void appendToBandFill(BandFillRenderable bandFill, GrowableFloatBuffer coords)
+  {
+    stageAppend(bandFill, coords, null, null);
+  }
+
+  private void stageAppend(final Renderable renderable, GrowableFloatBuffer coords, GrowableIntBuffer indices,
+                           GrowableFloatBuffer colors)
+  {
+    if (renderable.stageAppend(coords, indices, colors))
+    {
+      updateScene(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          renderable.applyStagedAppend();
+        }
+      });
+    }
+  }
+
+  // Each text is anchored at the x coordinate of the same index and drawn along the bottom edge, paddingPx pixels to the
+  // right of its anchor. Glyphs are laid out on the calling thread, leaving only the upload for the GL thread.
+  public TextRenderable addText(int drawOrder, float[] anchorXs, String[] texts, float textSizePx, @ColorInt int color,
+                                float paddingPx)
+  {
+    GlyphAtlas glyphAtlas = getGlyphAtlas(textSizePx);
+    GrowableFloatBuffer vertices = new GrowableFloatBuffer();
+    for (int i = 0; i < texts.length; i++)
+    {
+      TextRenderable.appendText(vertices, glyphAtlas, anchorXs[i], texts[i], paddingPx);
+    }
+    TextRenderable text = new TextRenderable(drawOrder, vertices, glyphAtlas, color);
+    addToScene(text);
+    return text;
+  }
+
+  // Width in pixels the text would be drawn at by addText.
+  public float measureText(String text, float textSizePx)
+  {
+    return getGlyphAtlas(textSizePx).measure(text);
+  }
+
+  private synchronized GlyphAtlas getGlyphAtlas(float textSizePx)
+  {
+    if (m_glyphAtlas == null || m_glyphAtlas.getTextSize() != textSizePx)
+    {
+      final GlyphAtlas oldGlyphAtlas = m_glyphAtlas;
+      m_glyphAtlas = new GlyphAtlas(textSizePx);
+      if (oldGlyphAtlas != null)
+      {
+        // Text still drawing from the old atlas stops being drawn once it is released.
+        updateScene(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            oldGlyphAtlas.release();
+          }
+        });
+      }
+    }
+    return m_glyphAtlas;
+  }
+
+  public void removeRenderable(Renderable renderable)
+  {
+    SceneTransaction transaction = m_transaction.get();
+    if (transaction != null)
+    {
+      transaction.remove(renderable);
+    }
+    else
+    {
+      commitScene(new SceneTransaction().remove(renderable));
+    }
+  }
+
+  // Scene changes made on this thread until the matching commitTransaction are held back, then applied together in a
+  // single GL thread event followed by a single render. Transactions may be nested, with only the outermost committing.
+  public void beginTransaction()
+  {
+    SceneTransaction transaction = m_transaction.get();
+    if (transaction == null)
+    {
+      transaction = new SceneTransaction();
+      m_transaction.set(transaction);
+    }
+    transaction.depth++;
+  }
+
+  public void commitTransaction()
+  {
+    SceneTransaction transaction = m_transaction.get();
+    if (transaction == null)
+    {
+      throw new IllegalStateException("No transaction has been begun on this thread.");
+    }
+    transaction.depth--;
+    if (transaction.depth == 0)
+    {
+      m_transaction.remove();
+      if (!transaction.isEmpty())
+      {
+        commitScene(transaction);
+      }
+    }
+  }
+
+  private void addToScene(Renderable renderable)
+  {
+    SceneTransaction transaction = m_transaction.get();
+    if (transaction != null)
+    {
+      transaction.add(renderable);
+    }
+    else
+    {
+      commitScene(new SceneTransaction().add(renderable));
+    }
+  }
+
+  private void updateScene(Runnable update)
+  {
+    SceneTransaction transaction = m_transaction.get();
+    if (transaction != null)
+    {
+      transaction.update(update);
+    }
+    else
+    {
+      commitScene(new SceneTransaction().update(update));
+    }
+  }
+
+  private void commitScene(final SceneTransaction transaction)
   {
     queueEvent(new Runnable()
     {
       @Override
       public void run()
       {
-        m_renderer.removeRenderable(renderable);
+        m_renderer.applyTransaction(transaction);
         requestRender();
       }
     });
@@ -0,0 +1,108 @@
+package com.voxtric.timegraph.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// Collects floats straight into a pooled direct buffer, ready to hand to a renderable without further copies.
+public class GrowableFloatBuffer
+{
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private ByteBuffer m_bytes = null;
+  private FloatBuffer m_floats = null;
+
+  public void add(float value)
+  {
+    ensureRemaining(1);
+    m_floats.put(value);
+  }
+
+  public void add(float first, float second)
+  {
+    ensureRemaining(2);
+    m_floats.put(first);
+    m_floats.put(second);
+  }
+
+  public void add(float first, float second, float third, float fourth)
+  {
+    ensureRemaining(4);
+    m_floats.put(first);
+    m_floats.put(second);
+    m_floats.put(third);
+    m_floats.put(fourth);
+  }
+
+  // Copies the other builder's contents onto the end of this one.
+  void addAll(GrowableFloatBuffer other)
+  {
+    int count = other.size();
+    if (count > 0)
+    {
+      ensureRemaining(count);
+      FloatBuffer floats = other.m_floats;
+      for (int i = 0; i < count; i++)
+      {
+        m_floats.put(floats.get(i));
+      }
+    }
+  }
+
+  public int size()
+  {
+    return m_floats != null ? m_floats.position() : 0;
+  }
+
+  public void clear()
+  {
+    if (m_floats != null)
+    {
+      m_floats.clear();
+    }
+  }
+
+  // Returns the buffer to the pool. Adding afterwards takes another one.
+  public void release()
+  {
+    if (m_bytes != null)
+    {
+      DirectBufferPool.release(m_bytes);
+      m_bytes = null;
+      m_floats = null;
+    }
+  }
+
+  // Hands the backing buffer over to a renderable, leaving this builder empty.
+  ByteBuffer detach()
+  {
+    if (m_bytes == null)
+    {
+      ensureRemaining(0);
+    }
+    ByteBuffer bytes = m_bytes;
+    m_bytes = null;
+    m_floats = null;
+    return bytes;
+  }
+
+  FloatBuffer getFloats()
+  {
+    return m_floats;
+  }
+
+  private void ensureRemaining(int count)
+  {
+    if (m_bytes == null)
+    {
+      m_bytes = DirectBufferPool.acquire(Math.max(count, DEFAULT_CAPACITY) * Renderable.FLOAT_BYTES);
+      m_floats = m_bytes.asFloatBuffer();
+    }
+    else if (m_floats.remaining() < count)
+    {
+      int size = m_floats.position();
+      m_bytes = DirectBufferPool.grow(m_bytes, size * Renderable.FLOAT_BYTES, (size + count) * Renderable.FLOAT_BYTES);
+      m_floats = m_bytes.asFloatBuffer();
+      m_floats.position(size);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.voxtric.timegraph.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// Collects ints, such as mesh indices, straight into a pooled direct buffer.
+public class GrowableIntBuffer
+{
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final int INT_BYTES = Integer.SIZE / Byte.SIZE;
+
+  private ByteBuffer m_bytes = null;
+  private IntBuffer m_ints = null;
+
+  public void add(int value)
+  {
+    ensureRemaining(1);
+    m_ints.put(value);
+  }
+
+  public void add(int first, int second, int third)
+  {
+    ensureRemaining(3);
+    m_ints.put(first);
+    m_ints.put(second);
+    m_ints.put(third);
+  }
+
+  public int size()
+  {
+    return m_ints != null ? m_ints.position() : 0;
+  }
+
+  public void clear()
+  {
+    if (m_ints != null)
+    {
+      m_ints.clear();
+    }
+  }
+
+  // Returns the buffer to the pool. Adding afterwards takes another one.
+  public void release()
+  {
+    if (m_bytes != null)
+    {
+      DirectBufferPool.release(m_bytes);
+      m_bytes = null;
+      m_ints = null;
+    }
+  }
+
+  // Hands the backing buffer over to a renderable, leaving this builder empty.
+  ByteBuffer detach()
+  {
+    if (m_bytes == null)
+    {
+      ensureRemaining(0);
+    }
+    ByteBuffer bytes = m_bytes;
+    m_bytes = null;
+    m_ints = null;
+    return bytes;
+  }
+
+  IntBuffer getInts()
+  {
+    return m_ints;
+  }
+
+  private void ensureRemaining(int count)
+  {
+    if (m_bytes == null)
+    {
+      m_bytes = DirectBufferPool.acquire(Math.max(count, DEFAULT_CAPACITY) * INT_BYTES);
+      m_ints = m_bytes.asIntBuffer();
+    }
+    else if (m_ints.remaining() < count)
+    {
+      int size = m_ints.position();
+      m_bytes = DirectBufferPool.grow(m_bytes, size * INT_BYTES, (size + count) * INT_BYTES);
+      m_ints = m_bytes.asIntBuffer();
+      m_ints.position(size);
+    }
+  }
+}
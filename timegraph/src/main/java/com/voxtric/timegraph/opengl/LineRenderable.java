@@ -12,33 +12,18 @@ public class LineRenderable extends TransformableRenderable
   }
 
   @Override
-  public void draw()
+  void draw(RenderContext context)
   {
-    int shaderHandle = TransformableRenderable.getShaderHandle();
+    ShaderProgram program = context.useProgram(TransformableRenderable.SHADER_SOURCE);
 
-    int vertexPositionHandle = GLES20.glGetAttribLocation(shaderHandle, "vertexPosition");
-    GLES20.glEnableVertexAttribArray(vertexPositionHandle);
-    GLES20.glVertexAttribPointer(vertexPositionHandle, COORDS_PER_VERTEX,
+    bindVertexBuffer();
+    GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_VERTEX_POSITION), COORDS_PER_VERTEX,
                                  GLES20.GL_FLOAT, false,
-                                 COORDS_PER_VERTEX * (Float.SIZE / Byte.SIZE) , getVertexBuffer());
+                                 COORDS_PER_VERTEX * FLOAT_BYTES, 0);
 
-    int xOffsetHandle = GLES20.glGetUniformLocation(shaderHandle, "xOffset");
-    GLES20.glUniform1f(xOffsetHandle, m_xOffset);
-
-    int xScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "xScale");
-    GLES20.glUniform1f(xScaleHandle, m_xScale);
-
-    int xScalePositionHandle = GLES20.glGetUniformLocation(shaderHandle, "xScalePosition");
-    GLES20.glUniform1f(xScalePositionHandle, m_xScalePosition);
-
-    int yScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "yScale");
-    GLES20.glUniform1f(yScaleHandle, m_yScale);
-
-    int colorHandle = GLES20.glGetUniformLocation(shaderHandle, "color");
-    GLES20.glUniform4fv(colorHandle, 1, m_colorBuffer);
+    applyTransform(program);
+    program.setUniform4(UNIFORM_COLOR, 1, m_colorBuffer);
 
     GLES20.glDrawArrays(GLES20.GL_LINES, 0, getVertexCount());
-
-    GLES20.glDisableVertexAttribArray(vertexPositionHandle);
   }
 }
@@ -1,44 +1,174 @@
 package com.voxtric.timegraph.opengl;
 
+import android.graphics.Color;
 import android.opengl.GLES20;
 
 import androidx.annotation.ColorInt;
 
+import java.nio.FloatBuffer;
+
 public class LineStripRenderable extends TransformableRenderable
 {
+  // Vertices are interleaved as x followed by one y per series, so every series shares the x coordinates and buffer.
+  private static final String VERTEX_SHADER_CODE =
+      "uniform float xOffset;" +
+      "uniform float xScale;" +
+      "uniform float xScalePosition;" +
+      "uniform float yScale;" +
+
+      "attribute float vertexX;" +
+      "attribute float vertexY;" +
+
+      "void main() {" +
+      "  float scaledDifference = (xScalePosition - vertexX) * (xScale - 1.0);" +
+      "  gl_Position = vec4(vertexX - scaledDifference + xOffset, ((vertexY + 1.0) * yScale) - 1.0, 0, 1);" +
+      "}";
+  private static final String FRAGMENT_SHADER_CODE =
+      "precision mediump float;" +
+      "uniform vec4 color;" +
+
+      "void main() {" +
+      "  gl_FragColor = color;" +
+      "}";
+  private static final ShaderSource SHADER_SOURCE = new ShaderSource(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE,
+                                                                     new String[] { "vertexX", "vertexY" },
+                                                                     new String[] { "xOffset", "xScale", "xScalePosition", "yScale", "color" });
+  private static final int ATTRIBUTE_VERTEX_X = 0;
+  private static final int ATTRIBUTE_VERTEX_Y = 1;
+
+  // Vertices drawn either side of the visible ones, so the strip still reaches the edges of the view.
+  private static final int CULLING_MARGIN_VERTICES = 2;
+
+  private final int m_seriesCount;
+  private final FloatBuffer m_seriesColorBuffer;
+
   LineStripRenderable(int drawOrder, float[] coords, @ColorInt int color)
   {
-    super(drawOrder, coords, color);
+    this(drawOrder, coords, 1, new int[] { color });
   }
 
-  @Override
-  public void draw()
+  LineStripRenderable(int drawOrder, float[] coords, int seriesCount, @ColorInt int[] colors)
+  {
+    super(drawOrder, coords, seriesCount + 1, colors[0]);
+
+    m_seriesCount = seriesCount;
+    m_seriesColorBuffer = allocateFloatBuffer(Math.max(seriesCount - 1, 1) * COLORS_PER_VERTEX);
+    for (int series = 1; series < seriesCount; series++)
+    {
+      setSeriesColor(series, colors[Math.min(series, colors.length - 1)]);
+    }
+  }
+
+  public int getSeriesCount()
   {
-    int shaderHandle = TransformableRenderable.getShaderHandle();
+    return m_seriesCount;
+  }
 
-    int vertexPositionHandle = GLES20.glGetAttribLocation(shaderHandle, "vertexPosition");
-    GLES20.glEnableVertexAttribArray(vertexPositionHandle);
-    GLES20.glVertexAttribPointer(vertexPositionHandle, COORDS_PER_VERTEX,
-                                 GLES20.GL_FLOAT, false,
-                                 COORDS_PER_VERTEX * (Float.SIZE / Byte.SIZE) , getVertexBuffer());
+  // Must be called on the GL thread once drawn, as GraphSurface.setSeriesColor does.
+  public void setSeriesColor(int series, @ColorInt int color)
+  {
+    if (series == 0)
+    {
+      setColor(color);
+    }
+    else
+    {
+      m_seriesColorBuffer.position((series - 1) * COLORS_PER_VERTEX);
+      m_seriesColorBuffer.put(Color.red(color) / 255.0f);
+      m_seriesColorBuffer.put(Color.green(color) / 255.0f);
+      m_seriesColorBuffer.put(Color.blue(color) / 255.0f);
+      m_seriesColorBuffer.put(Color.alpha(color) / 255.0f);
+      m_seriesColorBuffer.position(0);
+    }
+  }
 
-    int xOffsetHandle = GLES20.glGetUniformLocation(shaderHandle, "xOffset");
-    GLES20.glUniform1f(xOffsetHandle, m_xOffset);
+  @Override
+  int getBufferUsage()
+  {
+    return GLES20.GL_DYNAMIC_DRAW;
+  }
 
-    int xScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "xScale");
-    GLES20.glUniform1f(xScaleHandle, m_xScale);
+  @Override
+  void draw(RenderContext context)
+  {
+    ShaderProgram program = context.useProgram(SHADER_SOURCE);
+    int stride = getFloatsPerVertex() * FLOAT_BYTES;
 
-    int xScalePositionHandle = GLES20.glGetUniformLocation(shaderHandle, "xScalePosition");
-    GLES20.glUniform1f(xScalePositionHandle, m_xScalePosition);
+    bindVertexBuffer();
+    GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_VERTEX_X), 1, GLES20.GL_FLOAT, false, stride, 0);
 
-    int yScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "yScale");
-    GLES20.glUniform1f(yScaleHandle, m_yScale);
+    applyTransform(program);
 
-    int colorHandle = GLES20.glGetUniformLocation(shaderHandle, "color");
-    GLES20.glUniform4fv(colorHandle, 1, m_colorBuffer);
+    int vertexYLocation = program.getAttributeLocation(ATTRIBUTE_VERTEX_Y);
+    int firstVertex = 0;
+    int vertexCount = getVertexCount();
+    if (m_xScale > 0.0f && vertexCount > 0)
+    {
+      // Inverting the transform gives the range of x coordinates landing within the view.
+      float scaledXScalePosition = m_xScalePosition * (m_xScale - 1.0f);
+      float visibleStartX = (-1.0f + scaledXScalePosition - m_xOffset) / m_xScale;
+      float visibleEndX = (1.0f + scaledXScalePosition - m_xOffset) / m_xScale;
+      firstVertex = Math.max(findFirstVertexAtOrAfter(visibleStartX) - 1 - CULLING_MARGIN_VERTICES, 0);
+      int endVertex = Math.min(findFirstVertexAfter(visibleEndX) + 1 + CULLING_MARGIN_VERTICES, vertexCount);
+      vertexCount = Math.max(endVertex - firstVertex, 0);
+    }
+    for (int series = 0; series < m_seriesCount; series++)
+    {
+      GLES20.glVertexAttribPointer(vertexYLocation, 1, GLES20.GL_FLOAT, false, stride, (series + 1) * FLOAT_BYTES);
+      if (series == 0)
+      {
+        program.setUniform4(UNIFORM_COLOR, 1, m_colorBuffer);
+      }
+      else
+      {
+        m_seriesColorBuffer.position((series - 1) * COLORS_PER_VERTEX);
+        program.setUniform4(UNIFORM_COLOR, 1, m_seriesColorBuffer);
+      }
+      GLES20.glDrawArrays(GLES20.GL_LINE_STRIP, firstVertex, vertexCount);
+    }
+    m_seriesColorBuffer.position(0);
+  }
 
-    GLES20.glDrawArrays(GLES20.GL_LINE_STRIP, 0, getVertexCount());
+  // X coordinates never decrease along the strip, so the visible vertices are found by binary search.
+  private int findFirstVertexAtOrAfter(float x)
+  {
+    FloatBuffer vertices = getVertexBuffer();
+    int floatsPerVertex = getFloatsPerVertex();
+    int low = 0;
+    int high = getVertexCount();
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (vertices.get(middle * floatsPerVertex) < x)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
+  }
 
-    GLES20.glDisableVertexAttribArray(vertexPositionHandle);
+  private int findFirstVertexAfter(float x)
+  {
+    FloatBuffer vertices = getVertexBuffer();
+    int floatsPerVertex = getFloatsPerVertex();
+    int low = 0;
+    int high = getVertexCount();
+    while (low < high)
+    {
+      int middle = (low + high) >>> 1;
+      if (vertices.get(middle * floatsPerVertex) <= x)
+      {
+        low = middle + 1;
+      }
+      else
+      {
+        high = middle;
+      }
+    }
+    return low;
   }
 }
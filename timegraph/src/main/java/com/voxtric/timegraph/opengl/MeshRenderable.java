@@ -4,9 +4,10 @@ import android.graphics.Color;
 import android.opengl.GLES20;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.Arrays;
 
 public class MeshRenderable extends TransformableRenderable
 {
@@ -34,86 +35,321 @@ public class MeshRenderable extends TransformableRenderable
       "void main() {" +
       "  gl_FragColor = fragmentColor;" +
       "}";
-  private static int s_shaderHandle = -1;
+  private static final ShaderSource SHADER_SOURCE = new ShaderSource(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE,
+                                                                     new String[] { "vertexPosition", "vertexColor" },
+                                                                     new String[] { "xOffset", "xScale", "xScalePosition", "yScale" });
+  private static final int ATTRIBUTE_VERTEX_COLOR = 1;
 
-  private final ShortBuffer m_indexBuffer;
-  private final int m_indexCount;
-  private final FloatBuffer m_colorBuffer;
+  private static final int SHORT_BYTES = Short.SIZE / Byte.SIZE;
+  private static final int INT_BYTES = Integer.SIZE / Byte.SIZE;
+  // The largest vertex span a chunk's triangles can have while indexing it with unsigned shorts.
+  private static final int MAX_CHUNK_VERTEX_SPAN = 0xFFFF;
 
-  MeshRenderable(int drawOrder, float[] coords, short[] indices, float[] colors)
+  // Indices are kept as ints. Without 32-bit index support they are drawn as chunks of triangles, each rebasing the
+  // attribute pointers on its lowest vertex so its indices fit in unsigned shorts.
+  private ByteBuffer m_indexBytes;
+  private IntBuffer m_indexBuffer;
+  private int m_indexCount;
+  private ByteBuffer m_colorBytes;
+  private FloatBuffer m_colorBuffer;
+
+  // Until a context says otherwise meshes are drawn as chunks, which every context supports.
+  private boolean m_intIndicesSupported = false;
+  private boolean m_drawingIntIndices = false;
+  private ByteBuffer m_chunkIndexBytes = null;
+  private ShortBuffer m_chunkIndexBuffer = null;
+  private int[] m_chunkFirstIndices = new int[1];
+  private int[] m_chunkIndexCounts = new int[1];
+  private int[] m_chunkBaseVertices = new int[1];
+  private int m_chunkCount = 0;
+
+  private int m_colorBufferHandle = 0;
+  private int m_uploadedColorCapacity = 0;
+  private int m_indexBufferHandle = 0;
+  private int m_uploadedIndexCapacity = 0;
+
+  MeshRenderable(int drawOrder, float[] coords, int[] indices, float[] colors)
   {
     super(drawOrder, coords, Color.TRANSPARENT);
 
-    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(indices.length * (Short.SIZE / Byte.SIZE));
-    byteBuffer.order(ByteOrder.nativeOrder());
-    m_indexBuffer = byteBuffer.asShortBuffer();
+    m_indexBytes = DirectBufferPool.acquire(indices.length * INT_BYTES);
+    m_indexBuffer = m_indexBytes.asIntBuffer();
     m_indexBuffer.put(indices);
     m_indexBuffer.position(0);
     m_indexCount = indices.length;
 
-    byteBuffer = ByteBuffer.allocateDirect(colors.length * (Float.SIZE / Byte.SIZE));
-    byteBuffer.order(ByteOrder.nativeOrder());
-    m_colorBuffer = byteBuffer.asFloatBuffer();
+    m_colorBytes = DirectBufferPool.acquire(colors.length * FLOAT_BYTES);
+    m_colorBuffer = m_colorBytes.asFloatBuffer();
     m_colorBuffer.put(colors);
     m_colorBuffer.position(0);
   }
 
+  // Takes over the builders' buffers, leaving them empty.
+  MeshRenderable(int drawOrder, GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    super(drawOrder, coords, Color.TRANSPARENT);
+
+    m_indexCount = indices.size();
+    m_indexBytes = indices.detach();
+    m_indexBuffer = m_indexBytes.asIntBuffer();
+
+    m_colorBytes = colors.detach();
+    m_colorBuffer = m_colorBytes.asFloatBuffer();
+  }
+
   @Override
-  void draw()
+  void onContextChanged(RenderContext context)
   {
-    int shaderHandle = MeshRenderable.getShaderHandle();
+    m_intIndicesSupported = context.supportsIntIndices();
+  }
 
-    int vertexPositionHandle = GLES20.glGetAttribLocation(shaderHandle, "vertexPosition");
-    GLES20.glEnableVertexAttribArray(vertexPositionHandle);
-    GLES20.glVertexAttribPointer(vertexPositionHandle, COORDS_PER_VERTEX,
-                                 GLES20.GL_FLOAT, false,
-                                 COORDS_PER_VERTEX * (Float.SIZE / Byte.SIZE), getVertexBuffer());
+  // Must be called on the GL thread. Indices are relative to the first appended vertex.
+  void appendMesh(float[] coords, int[] indices, float[] colors)
+  {
+    appendMesh(FloatBuffer.wrap(coords), IntBuffer.wrap(indices), FloatBuffer.wrap(colors));
+  }
 
-    int vertexColorHandle = GLES20.glGetAttribLocation(shaderHandle, "vertexColor");
-    GLES20.glEnableVertexAttribArray(vertexColorHandle);
-    GLES20.glVertexAttribPointer(vertexColorHandle, COLORS_PER_VERTEX,
-                                 GLES20.GL_FLOAT, false,
-                                 COLORS_PER_VERTEX * (Float.SIZE / Byte.SIZE), m_colorBuffer);
+  @Override
+  void appendStaged(GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    appendMesh(readable(coords.getFloats()), readable(indices.getInts()), readable(colors.getFloats()));
+  }
+
+  private void appendMesh(FloatBuffer coords, IntBuffer indices, FloatBuffer colors)
+  {
+    if (m_colorBuffer == null)
+    {
+      // Already released, so there is nothing left to append to.
+      return;
+    }
+
+    int vertexStart = getVertexCount();
+    int colorLength = colors.remaining();
+    int usedColorLength = vertexStart * COLORS_PER_VERTEX;
+    if (usedColorLength + colorLength > m_colorBuffer.capacity())
+    {
+      m_colorBytes = DirectBufferPool.grow(m_colorBytes, usedColorLength * FLOAT_BYTES, (usedColorLength + colorLength) * FLOAT_BYTES);
+      m_colorBuffer = m_colorBytes.asFloatBuffer();
+    }
+    m_colorBuffer.position(usedColorLength);
+    m_colorBuffer.put(colors);
+    m_colorBuffer.position(0);
+
+    int indexLength = indices.remaining();
+    int usedIndexLength = m_indexCount;
+    if (m_indexCount + indexLength > m_indexBuffer.capacity())
+    {
+      m_indexBytes = DirectBufferPool.grow(m_indexBytes, m_indexCount * INT_BYTES, (m_indexCount + indexLength) * INT_BYTES);
+      m_indexBuffer = m_indexBytes.asIntBuffer();
+    }
+    m_indexBuffer.position(m_indexCount);
+    while (indices.hasRemaining())
+    {
+      m_indexBuffer.put(indices.get() + vertexStart);
+    }
+    m_indexBuffer.position(0);
+    m_indexCount += indexLength;
+
+    if (m_colorBufferHandle != 0)
+    {
+      if (m_colorBuffer.capacity() > m_uploadedColorCapacity)
+      {
+        uploadColors();
+      }
+      else
+      {
+        updateBufferObject(GLES20.GL_ARRAY_BUFFER, m_colorBufferHandle, m_colorBuffer, usedColorLength, colorLength, FLOAT_BYTES);
+      }
+    }
+    if (m_indexBufferHandle != 0)
+    {
+      if (m_indexBuffer.capacity() > m_uploadedIndexCapacity)
+      {
+        uploadIndices();
+      }
+      else if (m_drawingIntIndices)
+      {
+        updateBufferObject(GLES20.GL_ELEMENT_ARRAY_BUFFER, m_indexBufferHandle, m_indexBuffer, usedIndexLength, indexLength, INT_BYTES);
+      }
+      else
+      {
+        addChunkedTriangles(usedIndexLength, m_indexCount);
+        updateBufferObject(GLES20.GL_ELEMENT_ARRAY_BUFFER, m_indexBufferHandle, m_chunkIndexBuffer, usedIndexLength, indexLength, SHORT_BYTES);
+      }
+    }
+
+    appendVertices(coords);
+  }
+
+  @Override
+  void upload()
+  {
+    super.upload();
+    uploadColors();
+    uploadIndices();
+  }
 
-    int xOffsetHandle = GLES20.glGetUniformLocation(shaderHandle, "xOffset");
-    GLES20.glUniform1f(xOffsetHandle, m_xOffset);
+  @Override
+  void release()
+  {
+    super.release();
+    if (m_colorBufferHandle != 0)
+    {
+      deleteBufferObject(m_colorBufferHandle);
+      m_colorBufferHandle = 0;
+    }
+    if (m_indexBufferHandle != 0)
+    {
+      deleteBufferObject(m_indexBufferHandle);
+      m_indexBufferHandle = 0;
+    }
+    if (m_colorBytes != null)
+    {
+      DirectBufferPool.release(m_colorBytes);
+      DirectBufferPool.release(m_indexBytes);
+      m_colorBytes = null;
+      m_colorBuffer = null;
+      m_indexBytes = null;
+      m_indexBuffer = null;
+      m_indexCount = 0;
+    }
+    releaseChunkIndices();
+    m_chunkCount = 0;
+  }
 
-    int xScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "xScale");
-    GLES20.glUniform1f(xScaleHandle, m_xScale);
+  @Override
+  void invalidate()
+  {
+    super.invalidate();
+    m_colorBufferHandle = 0;
+    m_indexBufferHandle = 0;
+  }
 
-    int xScalePositionHandle = GLES20.glGetUniformLocation(shaderHandle, "xScalePosition");
-    GLES20.glUniform1f(xScalePositionHandle, m_xScalePosition);
+  @Override
+  int getBufferUsage()
+  {
+    return GLES20.GL_DYNAMIC_DRAW;
+  }
 
-    int yScaleHandle = GLES20.glGetUniformLocation(shaderHandle, "yScale");
-    GLES20.glUniform1f(yScaleHandle, m_yScale);
+  @Override
+  void draw(RenderContext context)
+  {
+    ShaderProgram program = context.useProgram(SHADER_SOURCE);
+    applyTransform(program);
 
-    GLES20.glDrawElements(GLES20.GL_TRIANGLES, m_indexCount, GLES20.GL_UNSIGNED_SHORT, m_indexBuffer);
+    bindVertexBuffer();
+    GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, m_indexBufferHandle);
+    if (m_drawingIntIndices)
+    {
+      bindAttributes(program, 0);
+      GLES20.glDrawElements(GLES20.GL_TRIANGLES, m_indexCount, GLES20.GL_UNSIGNED_INT, 0);
+    }
+    else
+    {
+      for (int i = 0; i < m_chunkCount; i++)
+      {
+        bindAttributes(program, m_chunkBaseVertices[i]);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, m_chunkIndexCounts[i], GLES20.GL_UNSIGNED_SHORT, m_chunkFirstIndices[i] * SHORT_BYTES);
+      }
+    }
+  }
 
-    GLES20.glDisableVertexAttribArray(vertexPositionHandle);
-    GLES20.glDisableVertexAttribArray(vertexColorHandle);
+  private void bindAttributes(ShaderProgram program, int baseVertex)
+  {
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, getVertexBufferHandle());
+    GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_VERTEX_POSITION), COORDS_PER_VERTEX,
+                                 GLES20.GL_FLOAT, false,
+                                 COORDS_PER_VERTEX * FLOAT_BYTES, baseVertex * COORDS_PER_VERTEX * FLOAT_BYTES);
+
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, m_colorBufferHandle);
+    GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_VERTEX_COLOR), COLORS_PER_VERTEX,
+                                 GLES20.GL_FLOAT, false,
+                                 COLORS_PER_VERTEX * FLOAT_BYTES, baseVertex * COLORS_PER_VERTEX * FLOAT_BYTES);
   }
 
-  static int getShaderHandle()
+  private void uploadColors()
   {
-    if (s_shaderHandle == -1)
+    if (m_colorBufferHandle == 0)
     {
-      int vertexShaderHandle = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-      int fragmentShaderHandle = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-      s_shaderHandle = GLES20.glCreateProgram();
-      GLES20.glAttachShader(s_shaderHandle, vertexShaderHandle);
-      GLES20.glAttachShader(s_shaderHandle, fragmentShaderHandle);
-      GLES20.glLinkProgram(s_shaderHandle);
+      m_colorBufferHandle = createBufferObject();
+    }
+    uploadBufferObject(GLES20.GL_ARRAY_BUFFER, m_colorBufferHandle, m_colorBuffer, m_colorBuffer.capacity() * FLOAT_BYTES,
+                       getBufferUsage());
+    m_uploadedColorCapacity = m_colorBuffer.capacity();
+  }
+
+  private void uploadIndices()
+  {
+    if (m_indexBufferHandle == 0)
+    {
+      m_indexBufferHandle = createBufferObject();
+    }
+
+    m_drawingIntIndices = m_intIndicesSupported;
+    if (m_drawingIntIndices)
+    {
+      releaseChunkIndices();
+      uploadBufferObject(GLES20.GL_ELEMENT_ARRAY_BUFFER, m_indexBufferHandle, m_indexBuffer, m_indexBuffer.capacity() * INT_BYTES,
+                         getBufferUsage());
+    }
+    else
+    {
+      if (m_chunkIndexBuffer == null || m_chunkIndexBuffer.capacity() < m_indexBuffer.capacity())
+      {
+        releaseChunkIndices();
+        m_chunkIndexBytes = DirectBufferPool.acquire(m_indexBuffer.capacity() * SHORT_BYTES);
+        m_chunkIndexBuffer = m_chunkIndexBytes.asShortBuffer();
+      }
+      m_chunkCount = 0;
+      addChunkedTriangles(0, m_indexCount);
+      uploadBufferObject(GLES20.GL_ELEMENT_ARRAY_BUFFER, m_indexBufferHandle, m_chunkIndexBuffer, m_chunkIndexBuffer.capacity() * SHORT_BYTES,
+                         getBufferUsage());
+    }
+    m_uploadedIndexCapacity = m_indexBuffer.capacity();
+  }
+
+  // Writes the chunk relative indices of whole triangles, starting a new chunk whenever a triangle falls outside the span
+  // the current chunk can index.
+  private void addChunkedTriangles(int firstIndex, int endIndex)
+  {
+    for (int i = firstIndex; i + 2 < endIndex; i += 3)
+    {
+      int first = m_indexBuffer.get(i);
+      int second = m_indexBuffer.get(i + 1);
+      int third = m_indexBuffer.get(i + 2);
+      int lowest = Math.min(first, Math.min(second, third));
+      int highest = Math.max(first, Math.max(second, third));
+
+      int chunk = m_chunkCount - 1;
+      if (chunk < 0 || lowest < m_chunkBaseVertices[chunk] || highest - m_chunkBaseVertices[chunk] > MAX_CHUNK_VERTEX_SPAN)
+      {
+        chunk = m_chunkCount++;
+        if (chunk == m_chunkBaseVertices.length)
+        {
+          m_chunkFirstIndices = Arrays.copyOf(m_chunkFirstIndices, chunk * 2);
+          m_chunkIndexCounts = Arrays.copyOf(m_chunkIndexCounts, chunk * 2);
+          m_chunkBaseVertices = Arrays.copyOf(m_chunkBaseVertices, chunk * 2);
+        }
+        m_chunkFirstIndices[chunk] = i;
+        m_chunkIndexCounts[chunk] = 0;
+        m_chunkBaseVertices[chunk] = lowest;
+      }
+
+      int baseVertex = m_chunkBaseVertices[chunk];
+      m_chunkIndexBuffer.put(i, (short)(first - baseVertex));
+      m_chunkIndexBuffer.put(i + 1, (short)(second - baseVertex));
+      m_chunkIndexBuffer.put(i + 2, (short)(third - baseVertex));
+      m_chunkIndexCounts[chunk] += 3;
     }
-    GLES20.glUseProgram(s_shaderHandle);
-    return s_shaderHandle;
   }
 
-  static void releaseShader()
+  private void releaseChunkIndices()
   {
-    if (s_shaderHandle != -1)
+    if (m_chunkIndexBytes != null)
     {
-      GLES20.glDeleteShader(s_shaderHandle);
+      DirectBufferPool.release(m_chunkIndexBytes);
+      m_chunkIndexBytes = null;
+      m_chunkIndexBuffer = null;
     }
-    s_shaderHandle = -1;
   }
 }
@@ -0,0 +1,65 @@
+package com.voxtric.timegraph.opengl;
+
+import android.opengl.GLES20;
+
+import java.util.IdentityHashMap;
+
+// The GL state belonging to one renderer's context: the programs linked in it, the program in use and the enabled
+// attribute arrays, and what the context supports. Each surface has its own context and GL thread, so each renderer
+// creates its own when its context is created and only uses it on its GL thread.
+final class RenderContext
+{
+  private final IdentityHashMap<ShaderSource, ShaderProgram> m_programs = new IdentityHashMap<>();
+  private ShaderProgram m_currentProgram = null;
+  private final boolean m_intIndicesSupported;
+
+  // Must be called on the GL thread once the context is current.
+  RenderContext()
+  {
+    String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+    m_intIndicesSupported = extensions != null && extensions.contains("GL_OES_element_index_uint");
+  }
+
+  boolean supportsIntIndices()
+  {
+    return m_intIndicesSupported;
+  }
+
+  // Links the program the first time it is used in this context, and only switches programs and attribute arrays when
+  // the program differs from the one already in use.
+  ShaderProgram useProgram(ShaderSource source)
+  {
+    ShaderProgram program = m_programs.get(source);
+    if (program == null)
+    {
+      program = new ShaderProgram(source);
+      m_programs.put(source, program);
+    }
+
+    if (program != m_currentProgram)
+    {
+      GLES20.glUseProgram(program.getHandle());
+
+      // Attribute array state is global rather than per program, so only change the arrays that differ.
+      if (m_currentProgram != null)
+      {
+        for (int location : m_currentProgram.getAttributeLocations())
+        {
+          if (location != -1 && !program.usesAttributeLocation(location))
+          {
+            GLES20.glDisableVertexAttribArray(location);
+          }
+        }
+      }
+      for (int location : program.getAttributeLocations())
+      {
+        if (location != -1 && (m_currentProgram == null || !m_currentProgram.usesAttributeLocation(location)))
+        {
+          GLES20.glEnableVertexAttribArray(location);
+        }
+      }
+      m_currentProgram = program;
+    }
+    return program;
+  }
+}
@@ -2,46 +2,60 @@ package com.voxtric.timegraph.opengl;
 
 import android.opengl.GLES20;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
 public abstract class Renderable
 {
   public static final int COORDS_PER_VERTEX = 2;
   public static final int COLORS_PER_VERTEX = 4;
 
-  private static final String VERTEX_SHADER_CODE =
-      "attribute vec2 vertexPosition;" +
+  static final int FLOAT_BYTES = Float.SIZE / Byte.SIZE;
 
-      "void main() {" +
-      "  gl_Position = vec4(vertexPosition.xy, 0, 1);" +
-      "}";
-  private static final String FRAGMENT_SHADER_CODE =
-      "precision mediump float;" +
+  private int m_drawOrder;
 
-      "void main() {" +
-      "  gl_FragColor = vec4(0.0, 0.0, 0.0, 1.0);" +
-      "}";
-  private static int s_shaderHandle = -1;
+  // Client-side geometry lives in pooled direct buffers, which are returned to the pool when the renderable is released.
+  private ByteBuffer m_vertexBytes;
+  private FloatBuffer m_vertexBuffer;
+  private int m_vertexCount;
+  private final int m_floatsPerVertex;
 
-  private int m_drawOrder;
+  // Geometry is drawn from a buffer object. The client-side copy is kept so it can be uploaded again after context loss.
+  private int m_vertexBufferHandle = 0;
+  private int m_uploadedVertexCapacity = 0;
 
-  private final FloatBuffer m_vertexBuffer;
-  private final int m_vertexCount;
+  private final AppendStage m_appendStage = new AppendStage();
 
   Renderable(int drawOrder, float[] coords)
   {
-    m_drawOrder = drawOrder;
+    this(drawOrder, coords, COORDS_PER_VERTEX);
+  }
 
-    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(coords.length * (Float.SIZE / Byte.SIZE));
-    byteBuffer.order(ByteOrder.nativeOrder());
+  Renderable(int drawOrder, float[] coords, int floatsPerVertex)
+  {
+    m_drawOrder = drawOrder;
+    m_floatsPerVertex = floatsPerVertex;
 
-    m_vertexBuffer = byteBuffer.asFloatBuffer();
+    m_vertexBytes = DirectBufferPool.acquire(coords.length * FLOAT_BYTES);
+    m_vertexBuffer = m_vertexBytes.asFloatBuffer();
     m_vertexBuffer.put(coords);
     m_vertexBuffer.position(0);
 
-    m_vertexCount = coords.length / COORDS_PER_VERTEX;
+    m_vertexCount = coords.length / floatsPerVertex;
+  }
+
+  // Takes over the builder's buffer rather than copying it.
+  Renderable(int drawOrder, GrowableFloatBuffer coords, int floatsPerVertex)
+  {
+    m_drawOrder = drawOrder;
+    m_floatsPerVertex = floatsPerVertex;
+
+    m_vertexCount = coords.size() / floatsPerVertex;
+    m_vertexBytes = coords.detach();
+    m_vertexBuffer = m_vertexBytes.asFloatBuffer();
   }
 
   public int getDrawOrder()
@@ -49,47 +63,201 @@ public abstract class Renderable
     return m_drawOrder;
   }
 
+  int getVertexCount()
+  {
+    return m_vertexCount;
+  }
+
+  int getFloatsPerVertex()
+  {
+    return m_floatsPerVertex;
+  }
+
+  // The client-side copy of the vertices, or null once released.
   FloatBuffer getVertexBuffer()
   {
     return m_vertexBuffer;
   }
 
-  int getVertexCount()
+  int getVertexBufferHandle()
   {
-    return m_vertexCount;
+    return m_vertexBufferHandle;
   }
 
-  abstract void draw();
+  // Must be called on the GL thread. Grows the vertex buffer geometrically so appends are amortised O(new vertices).
+  void appendVertices(float[] coords, int offset, int length)
+  {
+    appendVertices(FloatBuffer.wrap(coords, offset, length));
+  }
 
-  static int getShaderHandle()
+  // Must be called on the GL thread. Appends the remaining floats of the given buffer.
+  void appendVertices(FloatBuffer coords)
   {
-    if (s_shaderHandle == -1)
+    int length = coords.remaining();
+    if (m_vertexBuffer == null)
+    {
+      // Already released, so there is nothing left to append to.
+      return;
+    }
+
+    int usedLength = m_vertexCount * m_floatsPerVertex;
+    if (usedLength + length > m_vertexBuffer.capacity())
     {
-      int vertexShaderHandle = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-      int fragmentShaderHandle = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-      s_shaderHandle = GLES20.glCreateProgram();
-      GLES20.glAttachShader(s_shaderHandle, vertexShaderHandle);
-      GLES20.glAttachShader(s_shaderHandle, fragmentShaderHandle);
-      GLES20.glLinkProgram(s_shaderHandle);
+      m_vertexBytes = DirectBufferPool.grow(m_vertexBytes, usedLength * FLOAT_BYTES, (usedLength + length) * FLOAT_BYTES);
+      m_vertexBuffer = m_vertexBytes.asFloatBuffer();
+    }
+    m_vertexBuffer.position(usedLength);
+    m_vertexBuffer.put(coords);
+    m_vertexBuffer.position(0);
+    m_vertexCount += length / m_floatsPerVertex;
+
+    if (m_vertexBufferHandle != 0)
+    {
+      if (m_vertexBuffer.capacity() > m_uploadedVertexCapacity)
+      {
+        upload();
+      }
+      else
+      {
+        updateBufferObject(GLES20.GL_ARRAY_BUFFER, m_vertexBufferHandle, m_vertexBuffer, usedLength, length, FLOAT_BYTES);
+      }
     }
-    GLES20.glUseProgram(s_shaderHandle);
-    return s_shaderHandle;
   }
 
-  static void releaseShader()
+  // Copies the builders for appending on the GL thread, so they can be reused as soon as this returns. Returns true when
+  // applyStagedAppend needs scheduling, with it otherwise already pending and taking these along with it.
+  boolean stageAppend(GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
   {
-    if (s_shaderHandle != -1)
+    return m_appendStage.stage(coords, indices, colors, m_floatsPerVertex);
+  }
+
+  // Must be called on the GL thread.
+  void applyStagedAppend()
+  {
+    m_appendStage.apply(this);
+  }
+
+  // Must be called on the GL thread. Only vertices are staged unless overridden.
+  void appendStaged(GrowableFloatBuffer coords, GrowableIntBuffer indices, GrowableFloatBuffer colors)
+  {
+    appendVertices(readable(coords.getFloats()));
+  }
+
+  // Must be called on the GL thread. The buffer object is sized to the client buffer's capacity so appends up to that
+  // capacity only upload the new vertices.
+  void upload()
+  {
+    if (m_vertexBufferHandle == 0)
     {
-      GLES20.glDeleteShader(s_shaderHandle);
+      m_vertexBufferHandle = createBufferObject();
     }
-    s_shaderHandle = -1;
+    uploadBufferObject(GLES20.GL_ARRAY_BUFFER, m_vertexBufferHandle, m_vertexBuffer, m_vertexBuffer.capacity() * FLOAT_BYTES,
+                       getBufferUsage());
+    m_uploadedVertexCapacity = m_vertexBuffer.capacity();
   }
 
-  static int loadShader(int type, String shaderCode)
+  // Must be called on the GL thread. Frees the buffer objects and recycles the client-side memory, after which the
+  // renderable can no longer be drawn.
+  void release()
   {
-    int shaderHandle = GLES20.glCreateShader(type);
-    GLES20.glShaderSource(shaderHandle, shaderCode);
-    GLES20.glCompileShader(shaderHandle);
-    return shaderHandle;
+    m_appendStage.release();
+    if (m_vertexBufferHandle != 0)
+    {
+      deleteBufferObject(m_vertexBufferHandle);
+      m_vertexBufferHandle = 0;
+    }
+    if (m_vertexBytes != null)
+    {
+      DirectBufferPool.release(m_vertexBytes);
+      m_vertexBytes = null;
+      m_vertexBuffer = null;
+      m_vertexCount = 0;
+    }
+  }
+
+  // Forgets buffer objects belonging to a lost context, where they no longer exist to be deleted.
+  void invalidate()
+  {
+    m_vertexBufferHandle = 0;
+  }
+
+  // Must be called on the GL thread. Uploads first if needed, so renderables drawn before being added still work.
+  void bindVertexBuffer()
+  {
+    if (m_vertexBufferHandle == 0)
+    {
+      upload();
+    }
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, m_vertexBufferHandle);
+  }
+
+  // Renderables only built once are hinted as static. Those appended to override this, as appends rewrite the buffer
+  // objects in place.
+  int getBufferUsage()
+  {
+    return GLES20.GL_STATIC_DRAW;
+  }
+
+  // Called on the GL thread before being uploaded to the renderer's context, when added and whenever it is recreated.
+  void onContextChanged(RenderContext context)
+  {
+  }
+
+  // Called on the GL thread when added to the renderer and whenever the surface changes size.
+  void onViewportChanged(int width, int height)
+  {
+  }
+
+  abstract void draw(RenderContext context);
+
+  // Views the filled part of a builder's buffer without disturbing the builder.
+  static FloatBuffer readable(FloatBuffer buffer)
+  {
+    FloatBuffer readable = buffer.duplicate();
+    readable.flip();
+    return readable;
+  }
+
+  static IntBuffer readable(IntBuffer buffer)
+  {
+    IntBuffer readable = buffer.duplicate();
+    readable.flip();
+    return readable;
+  }
+
+  static int createBufferObject()
+  {
+    int[] handles = new int[1];
+    GLES20.glGenBuffers(1, handles, 0);
+    return handles[0];
+  }
+
+  static void deleteBufferObject(int handle)
+  {
+    GLES20.glDeleteBuffers(1, new int[] { handle }, 0);
+  }
+
+  static void uploadBufferObject(int target, int handle, Buffer data, int byteCount, int usage)
+  {
+    data.position(0);
+    GLES20.glBindBuffer(target, handle);
+    GLES20.glBufferData(target, byteCount, data, usage);
+    GLES20.glBindBuffer(target, 0);
+  }
+
+  static void updateBufferObject(int target, int handle, Buffer data, int elementOffset, int elementCount, int elementBytes)
+  {
+    data.position(elementOffset);
+    GLES20.glBindBuffer(target, handle);
+    GLES20.glBufferSubData(target, elementOffset * elementBytes, elementCount * elementBytes, data);
+    GLES20.glBindBuffer(target, 0);
+    data.position(0);
+  }
+
+  static FloatBuffer allocateFloatBuffer(int length)
+  {
+    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(length * (Float.SIZE / Byte.SIZE));
+    byteBuffer.order(ByteOrder.nativeOrder());
+    return byteBuffer.asFloatBuffer();
   }
 }
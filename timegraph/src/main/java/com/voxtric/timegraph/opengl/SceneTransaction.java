@@ -0,0 +1,35 @@
+package com.voxtric.timegraph.opengl;
+
+import java.util.ArrayList;
+
+// A set of scene changes applied to the renderer together, so no frame is drawn with only some of them made.
+final class SceneTransaction
+{
+  final ArrayList<Runnable> updates = new ArrayList<>();
+  final ArrayList<Renderable> added = new ArrayList<>();
+  final ArrayList<Renderable> removed = new ArrayList<>();
+  int depth = 0;
+
+  SceneTransaction update(Runnable update)
+  {
+    updates.add(update);
+    return this;
+  }
+
+  SceneTransaction add(Renderable renderable)
+  {
+    added.add(renderable);
+    return this;
+  }
+
+  SceneTransaction remove(Renderable renderable)
+  {
+    removed.add(renderable);
+    return this;
+  }
+
+  boolean isEmpty()
+  {
+    return updates.isEmpty() && added.isEmpty() && removed.isEmpty();
+  }
+}
@@ -0,0 +1,105 @@
+package com.voxtric.timegraph.opengl;
+
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+// A shader program linked in one context, with its attribute and uniform locations cached. Its float uniform values are
+// tracked, so consecutive draws sharing the program skip the GL calls that would not change anything.
+final class ShaderProgram
+{
+  private final int m_handle;
+  private final int[] m_attributeLocations;
+  private final int[] m_uniformLocations;
+  private final float[] m_uniformValues;
+  private final boolean[] m_uniformValuesSet;
+
+  // Must be called on the GL thread of the context the program is for.
+  ShaderProgram(ShaderSource source)
+  {
+    int vertexShaderHandle = loadShader(GLES20.GL_VERTEX_SHADER, source.vertexShaderCode);
+    int fragmentShaderHandle = loadShader(GLES20.GL_FRAGMENT_SHADER, source.fragmentShaderCode);
+    m_handle = GLES20.glCreateProgram();
+    GLES20.glAttachShader(m_handle, vertexShaderHandle);
+    GLES20.glAttachShader(m_handle, fragmentShaderHandle);
+    GLES20.glLinkProgram(m_handle);
+
+    // Once linked the shaders are only kept alive by the program.
+    GLES20.glDeleteShader(vertexShaderHandle);
+    GLES20.glDeleteShader(fragmentShaderHandle);
+
+    m_attributeLocations = new int[source.attributeNames.length];
+    for (int i = 0; i < source.attributeNames.length; i++)
+    {
+      m_attributeLocations[i] = GLES20.glGetAttribLocation(m_handle, source.attributeNames[i]);
+    }
+    m_uniformLocations = new int[source.uniformNames.length];
+    for (int i = 0; i < source.uniformNames.length; i++)
+    {
+      m_uniformLocations[i] = GLES20.glGetUniformLocation(m_handle, source.uniformNames[i]);
+    }
+    m_uniformValues = new float[source.uniformNames.length];
+    m_uniformValuesSet = new boolean[source.uniformNames.length];
+  }
+
+  int getHandle()
+  {
+    return m_handle;
+  }
+
+  int getAttributeLocation(int attribute)
+  {
+    return m_attributeLocations[attribute];
+  }
+
+  int getUniformLocation(int uniform)
+  {
+    return m_uniformLocations[uniform];
+  }
+
+  // Must be called on the GL thread while this program is in use.
+  void setUniform(int uniform, float value)
+  {
+    if (!m_uniformValuesSet[uniform] || m_uniformValues[uniform] != value)
+    {
+      GLES20.glUniform1f(m_uniformLocations[uniform], value);
+      m_uniformValues[uniform] = value;
+      m_uniformValuesSet[uniform] = true;
+    }
+  }
+
+  // Must be called on the GL thread while this program is in use.
+  void setUniform2(int uniform, float first, float second)
+  {
+    GLES20.glUniform2f(m_uniformLocations[uniform], first, second);
+  }
+
+  // Must be called on the GL thread while this program is in use.
+  void setUniform4(int uniform, int count, FloatBuffer values)
+  {
+    GLES20.glUniform4fv(m_uniformLocations[uniform], count, values);
+  }
+
+  boolean usesAttributeLocation(int location)
+  {
+    boolean used = false;
+    for (int i = 0; i < m_attributeLocations.length && !used; i++)
+    {
+      used = m_attributeLocations[i] == location;
+    }
+    return used;
+  }
+
+  int[] getAttributeLocations()
+  {
+    return m_attributeLocations;
+  }
+
+  private static int loadShader(int type, String shaderCode)
+  {
+    int shaderHandle = GLES20.glCreateShader(type);
+    GLES20.glShaderSource(shaderHandle, shaderCode);
+    GLES20.glCompileShader(shaderHandle);
+    return shaderHandle;
+  }
+}
@@ -0,0 +1,19 @@
+package com.voxtric.timegraph.opengl;
+
+// The code and variable names of a shader program. Holds no GL state, so can be shared by every renderer, each linking
+// its own program from it for its own context.
+final class ShaderSource
+{
+  final String vertexShaderCode;
+  final String fragmentShaderCode;
+  final String[] attributeNames;
+  final String[] uniformNames;
+
+  ShaderSource(String vertexShaderCode, String fragmentShaderCode, String[] attributeNames, String[] uniformNames)
+  {
+    this.vertexShaderCode = vertexShaderCode;
+    this.fragmentShaderCode = fragmentShaderCode;
+    this.attributeNames = attributeNames;
+    this.uniformNames = uniformNames;
+  }
+}
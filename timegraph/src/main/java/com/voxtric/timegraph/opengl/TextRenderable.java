@@ -0,0 +1,141 @@
+package com.voxtric.timegraph.opengl;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.ColorInt;
+
+// Draws strings as textured quads sampled from a glyph atlas. Each string is anchored at an x coordinate moved by the
+// same transform as the data, while its glyphs are offset from that anchor in pixels, so the text keeps its size
+// however the data is scaled. Strings sit along the bottom edge of the view.
+public class TextRenderable extends TransformableRenderable
+{
+  // Each vertex holds its anchor x, its pixel offset from the anchor and bottom edge, and its atlas texture coordinates.
+  private static final int FLOATS_PER_VERTEX = 5;
+  private static final int VERTICES_PER_GLYPH = 6;
+
+  private static final String VERTEX_SHADER_CODE =
+      "uniform float xOffset;" +
+      "uniform float xScale;" +
+      "uniform float xScalePosition;" +
+      "uniform float yScale;" +
+      "uniform vec2 pixelSize;" +
+
+      "attribute float anchorX;" +
+      "attribute vec2 pixelOffset;" +
+      "attribute vec2 textureCoord;" +
+
+      "varying vec2 fragmentTextureCoord;" +
+
+      "void main() {" +
+      "  float scaledDifference = (xScalePosition - anchorX) * (xScale - 1.0);" +
+      "  float x = anchorX - scaledDifference + xOffset + (pixelOffset.x * pixelSize.x);" +
+      "  gl_Position = vec4(x, (pixelOffset.y * pixelSize.y) - 1.0, 0, 1);" +
+      "  fragmentTextureCoord = textureCoord;" +
+      "}";
+  private static final String FRAGMENT_SHADER_CODE =
+      "precision mediump float;" +
+      "uniform vec4 color;" +
+      "uniform sampler2D glyphs;" +
+
+      "varying vec2 fragmentTextureCoord;" +
+
+      "void main() {" +
+      "  gl_FragColor = vec4(color.rgb, color.a * texture2D(glyphs, fragmentTextureCoord).a);" +
+      "}";
+  private static final ShaderSource SHADER_SOURCE = new ShaderSource(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE,
+                                                                     new String[] { "anchorX", "pixelOffset", "textureCoord" },
+                                                                     new String[] { "xOffset", "xScale", "xScalePosition", "yScale",
+                                                                                    "color", "pixelSize" });
+  private static final int ATTRIBUTE_ANCHOR_X = 0;
+  private static final int ATTRIBUTE_PIXEL_OFFSET = 1;
+  private static final int ATTRIBUTE_TEXTURE_COORD = 2;
+  private static final int UNIFORM_PIXEL_SIZE = 5;
+
+  private final GlyphAtlas m_glyphAtlas;
+  private float m_pixelWidth = 0.0f;
+  private float m_pixelHeight = 0.0f;
+
+  TextRenderable(int drawOrder, GrowableFloatBuffer vertices, GlyphAtlas glyphAtlas, @ColorInt int color)
+  {
+    super(drawOrder, vertices, FLOATS_PER_VERTEX, color);
+    m_glyphAtlas = glyphAtlas;
+  }
+
+  // Lays out one string from the anchor, starting paddingX pixels to its right with the bottom of its glyph cells on the
+  // bottom edge of the view. Glyphs the atlas has no room left for are skipped.
+  static void appendText(GrowableFloatBuffer vertices, GlyphAtlas glyphAtlas, float anchorX, String text, float paddingX)
+  {
+    float penX = paddingX;
+    float cellWidth = glyphAtlas.getCellWidth();
+    float cellHeight = glyphAtlas.getCellHeight();
+    for (int i = 0; i < text.length(); i++)
+    {
+      int slot = glyphAtlas.getGlyph(text.charAt(i));
+      if (slot != -1)
+      {
+        float left = glyphAtlas.getSlotLeft(slot);
+        float right = glyphAtlas.getSlotRight(slot);
+        float top = glyphAtlas.getSlotTop(slot);
+        float bottom = glyphAtlas.getSlotBottom(slot);
+        float quadRight = penX + cellWidth;
+
+        addVertex(vertices, anchorX, penX, 0.0f, left, bottom);
+        addVertex(vertices, anchorX, quadRight, 0.0f, right, bottom);
+        addVertex(vertices, anchorX, penX, cellHeight, left, top);
+        addVertex(vertices, anchorX, penX, cellHeight, left, top);
+        addVertex(vertices, anchorX, quadRight, 0.0f, right, bottom);
+        addVertex(vertices, anchorX, quadRight, cellHeight, right, top);
+
+        penX += glyphAtlas.getAdvance(slot);
+      }
+    }
+  }
+
+  private static void addVertex(GrowableFloatBuffer vertices, float anchorX, float pixelX, float pixelY, float u, float v)
+  {
+    vertices.add(anchorX);
+    vertices.add(pixelX, pixelY);
+    vertices.add(u, v);
+  }
+
+  @Override
+  void onViewportChanged(int width, int height)
+  {
+    m_pixelWidth = width > 0 ? 2.0f / width : 0.0f;
+    m_pixelHeight = height > 0 ? 2.0f / height : 0.0f;
+  }
+
+  @Override
+  void invalidate()
+  {
+    super.invalidate();
+    m_glyphAtlas.invalidate();
+  }
+
+  @Override
+  void draw(RenderContext context)
+  {
+    int vertexCount = getVertexCount();
+    if (vertexCount >= VERTICES_PER_GLYPH && m_glyphAtlas.bind())
+    {
+      ShaderProgram program = context.useProgram(SHADER_SOURCE);
+      int stride = FLOATS_PER_VERTEX * FLOAT_BYTES;
+
+      bindVertexBuffer();
+      GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_ANCHOR_X), 1, GLES20.GL_FLOAT, false, stride, 0);
+      GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_PIXEL_OFFSET), 2, GLES20.GL_FLOAT, false, stride,
+                                   FLOAT_BYTES);
+      GLES20.glVertexAttribPointer(program.getAttributeLocation(ATTRIBUTE_TEXTURE_COORD), 2, GLES20.GL_FLOAT, false, stride,
+                                   3 * FLOAT_BYTES);
+
+      applyTransform(program);
+      program.setUniform2(UNIFORM_PIXEL_SIZE, m_pixelWidth, m_pixelHeight);
+      program.setUniform4(UNIFORM_COLOR, 1, m_colorBuffer);
+
+      GLES20.glEnable(GLES20.GL_BLEND);
+      GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+      GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
+      GLES20.glDisable(GLES20.GL_BLEND);
+    }
+  }
+}
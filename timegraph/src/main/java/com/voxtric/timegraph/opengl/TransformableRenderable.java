@@ -1,7 +1,6 @@
 package com.voxtric.timegraph.opengl;
 
 import android.graphics.Color;
-import android.opengl.GLES20;
 
 import androidx.annotation.ColorInt;
 
@@ -9,7 +8,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
-abstract class TransformableRenderable extends Renderable
+public abstract class TransformableRenderable extends Renderable
 {
   private static final String VERTEX_SHADER_CODE =
       "uniform float xOffset;" +
@@ -30,7 +29,17 @@ abstract class TransformableRenderable extends Renderable
       "void main() {" +
       "  gl_FragColor = color;" +
       "}";
-  private static int s_shaderHandle = -1;
+  static final ShaderSource SHADER_SOURCE = new ShaderSource(VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE,
+                                                             new String[] { "vertexPosition" },
+                                                             new String[] { "xOffset", "xScale", "xScalePosition", "yScale", "color" });
+  static final int ATTRIBUTE_VERTEX_POSITION = 0;
+
+  // Every transformable program declares the transform uniforms first and in this order, followed by any others.
+  static final int UNIFORM_X_OFFSET = 0;
+  static final int UNIFORM_X_SCALE = 1;
+  static final int UNIFORM_X_SCALE_POSITION = 2;
+  static final int UNIFORM_Y_SCALE = 3;
+  static final int UNIFORM_COLOR = 4;
 
   float m_xOffset = 0.0f;
   float m_xScale = 1.0f;
@@ -40,20 +49,24 @@ abstract class TransformableRenderable extends Renderable
 
   TransformableRenderable(int drawOrder, float[] coords, @ColorInt int color)
   {
-    super(drawOrder, coords);
+    this(drawOrder, coords, COORDS_PER_VERTEX, color);
+  }
 
-    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(COLORS_PER_VERTEX * (Float.SIZE / Byte.SIZE));
-    byteBuffer.order(ByteOrder.nativeOrder());
+  TransformableRenderable(int drawOrder, float[] coords, int floatsPerVertex, @ColorInt int color)
+  {
+    super(drawOrder, coords, floatsPerVertex);
+    m_colorBuffer = createColorBuffer(color);
+  }
 
-    float[] colors = new float[] {
-        Color.red(color) / 255.0f,
-        Color.green(color) / 255.0f,
-        Color.blue(color) / 255.0f,
-        Color.alpha(color) / 255.0f
-    };
-    m_colorBuffer = byteBuffer.asFloatBuffer();
-    m_colorBuffer.put(colors);
-    m_colorBuffer.position(0);
+  TransformableRenderable(int drawOrder, GrowableFloatBuffer coords, @ColorInt int color)
+  {
+    this(drawOrder, coords, COORDS_PER_VERTEX, color);
+  }
+
+  TransformableRenderable(int drawOrder, GrowableFloatBuffer coords, int floatsPerVertex, @ColorInt int color)
+  {
+    super(drawOrder, coords, floatsPerVertex);
+    m_colorBuffer = createColorBuffer(color);
   }
 
   public void setXOffset(float xOffset)
@@ -72,6 +85,12 @@ abstract class TransformableRenderable extends Renderable
     m_yScale = yScale;
   }
 
+  public float getYScale()
+  {
+    return m_yScale;
+  }
+
+  // Must be called on the GL thread once drawn, as GraphSurface.setColor does.
   public void setColor(@ColorInt int color)
   {
     float[] colors = new float[] {
@@ -85,27 +104,29 @@ abstract class TransformableRenderable extends Renderable
     m_colorBuffer.position(0);
   }
 
-  static int getShaderHandle()
+  // Must be called on the GL thread while the program is in use.
+  void applyTransform(ShaderProgram program)
   {
-    if (s_shaderHandle == -1)
-    {
-      int vertexShaderHandle = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-      int fragmentShaderHandle = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-      s_shaderHandle = GLES20.glCreateProgram();
-      GLES20.glAttachShader(s_shaderHandle, vertexShaderHandle);
-      GLES20.glAttachShader(s_shaderHandle, fragmentShaderHandle);
-      GLES20.glLinkProgram(s_shaderHandle);
-    }
-    GLES20.glUseProgram(s_shaderHandle);
-    return s_shaderHandle;
+    program.setUniform(UNIFORM_X_OFFSET, m_xOffset);
+    program.setUniform(UNIFORM_X_SCALE, m_xScale);
+    program.setUniform(UNIFORM_X_SCALE_POSITION, m_xScalePosition);
+    program.setUniform(UNIFORM_Y_SCALE, m_yScale);
   }
 
-  static void releaseShader()
+  private static FloatBuffer createColorBuffer(@ColorInt int color)
   {
-    if (s_shaderHandle != -1)
-    {
-      GLES20.glDeleteShader(s_shaderHandle);
-    }
-    s_shaderHandle = -1;
+    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(COLORS_PER_VERTEX * (Float.SIZE / Byte.SIZE));
+    byteBuffer.order(ByteOrder.nativeOrder());
+
+    float[] colors = new float[] {
+        Color.red(color) / 255.0f,
+        Color.green(color) / 255.0f,
+        Color.blue(color) / 255.0f,
+        Color.alpha(color) / 255.0f
+    };
+    FloatBuffer colorBuffer = byteBuffer.asFloatBuffer();
+    colorBuffer.put(colors);
+    colorBuffer.position(0);
+    return colorBuffer;
   }
 }